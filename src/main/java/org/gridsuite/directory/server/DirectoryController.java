@@ -11,6 +11,7 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.gridsuite.directory.server.dto.*;
 import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
 import org.gridsuite.directory.server.services.DirectoryRepositoryService;
@@ -22,12 +23,15 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import static java.lang.Boolean.TRUE;
+
 /**
  * @author Nicolas Noir <nicolas.noir at rte-france.com>
  * @author Slimane Amar <slimane.amar at rte-france.com>
@@ -37,6 +41,8 @@ import java.util.UUID;
 @Tag(name = "directory-server")
 public class DirectoryController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final DirectoryService service;
 
     private final DirectoryRepositoryService repositoryService;
@@ -170,12 +176,37 @@ public class DirectoryController {
 
     @GetMapping(value = "/directories/{directoryUuid}/elements", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Get directory elements")
-    @ApiResponses(@ApiResponse(responseCode = "200", description = "List directory's elements"))
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "List directory's elements, or a page of them if a page size is given: " +
+        "the cursor of the next page is then returned in the " + NEXT_CURSOR_HEADER + " header, absent on the last page"),
+        @ApiResponse(responseCode = "400", description = "Invalid page size or cursor")})
     public ResponseEntity<List<ElementAttributes>> getDirectoryElements(@PathVariable("directoryUuid") UUID directoryUuid,
                                                                         @RequestParam(value = "elementTypes", required = false, defaultValue = "") List<String> types,
                                                                         @RequestParam(value = "recursive", required = false, defaultValue = "false") Boolean recursive,
+                                                                        @Parameter(description = "Page size, the direct children only being paginated") @RequestParam(value = "size", required = false) Integer size,
+                                                                        @RequestParam(value = "sortBy", required = false, defaultValue = "NAME") ElementsSort sortBy,
+                                                                        @Parameter(description = "Cursor returned with the previous page") @RequestParam(value = "cursor", required = false) String cursor,
                                                                         @RequestHeader("userId") String userId) {
-        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.getDirectoryElements(directoryUuid, types, recursive, userId));
+        if (size == null || TRUE.equals(recursive)) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.getDirectoryElements(directoryUuid, types, recursive, userId));
+        }
+        ElementsPage page = service.getDirectoryElementsPage(directoryUuid, types, sortBy, cursor, size, userId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.elements());
+    }
+
+    @GetMapping(value = "/directories/{directoryUuid}/elements", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Get directory elements, streamed as newline delimited JSON")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Directory's elements, one per line")})
+    public void getDirectoryElementsStream(@PathVariable("directoryUuid") UUID directoryUuid,
+                                           @RequestParam(value = "elementTypes", required = false, defaultValue = "") List<String> types,
+                                           @RequestParam(value = "recursive", required = false, defaultValue = "false") Boolean recursive,
+                                           @RequestHeader("userId") String userId,
+                                           HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        service.writeDirectoryElements(directoryUuid, types, recursive, userId, response.getOutputStream());
     }
 
     @GetMapping(value = "/elements/{elementUuid}", produces = MediaType.APPLICATION_JSON_VALUE)
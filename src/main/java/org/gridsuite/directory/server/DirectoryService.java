@@ -12,17 +12,22 @@ import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
 import org.gridsuite.directory.server.error.DirectoryException;
 import org.gridsuite.directory.server.repository.DirectoryElementEntity;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.DirectoryElementRepositoryCustom.ElementModification;
 import org.gridsuite.directory.server.repository.ReferenceEmbeddable;
 import org.gridsuite.directory.server.services.*;
+import org.gridsuite.directory.server.services.DirectoryRepositoryService.NameAndType;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import static java.lang.Boolean.TRUE;
@@ -40,32 +45,28 @@ public class DirectoryService {
     public static final String DIRECTORY = "DIRECTORY";
     public static final String ELEMENT = "ELEMENT";
     private static final int ES_PAGE_MAX_SIZE = 50;
-    static final int MAX_RETRY = 3;
-    static final int DELAY_RETRY = 50;
+    static final int ELEMENTS_PAGE_MAX_SIZE = 1000;
 
     private final NotificationService notificationService;
     private final DirectoryRepositoryService repositoryService;
-    private final RoleService roleService;
 
     private final DirectoryElementRepository directoryElementRepository;
     private final DirectoryElementInfosService directoryElementInfosService;
-    private final TimerService timerService;
     private final PermissionService permissionService;
+    private final ElementAttributesStreamWriter elementAttributesStreamWriter;
 
     public DirectoryService(DirectoryRepositoryService repositoryService,
                             NotificationService notificationService,
                             DirectoryElementRepository directoryElementRepository,
                             DirectoryElementInfosService directoryElementInfosService,
-                            TimerService timerService,
-                            RoleService roleService,
-                            PermissionService permissionService) {
+                            PermissionService permissionService,
+                            ElementAttributesStreamWriter elementAttributesStreamWriter) {
         this.repositoryService = repositoryService;
         this.notificationService = notificationService;
         this.directoryElementRepository = directoryElementRepository;
         this.directoryElementInfosService = directoryElementInfosService;
-        this.timerService = timerService;
-        this.roleService = roleService;
         this.permissionService = permissionService;
+        this.elementAttributesStreamWriter = elementAttributesStreamWriter;
     }
 
     //TODO: this consumer is the kept here at the moment, but it will be moved to explore server later on
@@ -107,6 +108,7 @@ public class DirectoryService {
         return toElementAttributesWithReferences(elementEntity);
     }
 
+    @Transactional
     public ElementAttributes duplicateElement(UUID elementId, UUID newElementId, UUID targetDirectoryId, String userId) {
         DirectoryElementEntity directoryElementEntity = directoryElementRepository.findById(elementId)
             .orElseThrow(() -> DirectoryException.createElementNotFound(ELEMENT, elementId));
@@ -136,6 +138,9 @@ public class DirectoryService {
     }
 
     private void assertDirectoryExist(UUID dirUuid) {
+        if (repositoryService.isDirectory(dirUuid)) {
+            return;
+        }
         if (!getElement(dirUuid).getType().equals(DIRECTORY)) {
             throw DirectoryException.of(DIRECTORY_NOT_DIRECTORY, "Element '%s' is not a directory", dirUuid);
         }
@@ -160,28 +165,17 @@ public class DirectoryService {
             elementAttributes.getOwner(),
             elementAttributes.getReferences().stream().map(this::createReferenceEntity).toList());
 
-        return tryInsertElement(elementEntity, parentDirectoryUuid, userId, generateNewName);
-    }
-
-    private DirectoryElementEntity tryInsertElement(DirectoryElementEntity elementEntity, UUID parentDirectoryUuid, String userId, boolean generateNewName) {
-        int retryCount = 0;
-        String baseElementName = elementEntity.getName();
-        do {
-            try {
-                if (generateNewName) {
-                    elementEntity.setName(getDuplicateNameCandidate(parentDirectoryUuid, baseElementName, elementEntity.getType(), userId));
-                }
-                return repositoryService.saveElement(elementEntity);
-            } catch (DataIntegrityViolationException e) {
-                if (generateNewName) {
-                    retryCount++;
-                } else {
-                    break;
-                }
-            }
-        } while (retryCount < MAX_RETRY && timerService.doPause(DELAY_RETRY));
-
-        throw DirectoryException.createElementNameAlreadyExists(elementEntity.getName());
+        if (generateNewName) {
+            // the name generations in the directory wait for each other until the end of their transaction:
+            // the candidate cannot be taken by a concurrent insertion, no retry is needed
+            repositoryService.lockDirectory(parentDirectoryUuid);
+            elementEntity.setName(getDuplicateNameCandidate(parentDirectoryUuid, elementEntity.getName(), elementEntity.getType(), userId));
+        }
+        try {
+            return repositoryService.insertElement(elementEntity);
+        } catch (DataIntegrityViolationException e) {
+            throw DirectoryException.createElementNameAlreadyExists(elementEntity.getName());
+        }
     }
 
     @Transactional
@@ -248,65 +242,143 @@ public class DirectoryService {
     }
 
     private Map<UUID, Long> getSubDirectoriesCounts(List<UUID> subDirectories, List<String> types, String userId) {
-        List<UUID> readableSubDirectories = subDirectories.stream().filter(dirId -> permissionService.hasReadPermissions(userId, List.of(dirId))).toList();
-        return repositoryService.findAllByParentIdInAndTypeIn(readableSubDirectories, types).stream()
-            .filter(child -> permissionService.hasReadPermissions(userId, List.of(child.getId())))
-            .collect(Collectors.groupingBy(
-                DirectoryElementRepository.ElementParentage::getParentId,
-                Collectors.counting()
-            ));
+        return permissionService.getReadableChildrenCounts(userId, subDirectories, types);
     }
 
     @Transactional(readOnly = true)
     public List<ElementAttributes> getDirectoryElements(UUID directoryUuid, List<String> types, Boolean recursive, String userId) {
-        if (!permissionService.hasReadPermissions(userId, List.of(directoryUuid))) {
-            return List.of();
-        }
-        ElementAttributes elementAttributes = getElement(directoryUuid);
-        if (elementAttributes == null) {
-            throw DirectoryException.createElementNotFound(DIRECTORY, directoryUuid);
-        }
-        if (!elementAttributes.getType().equals(DIRECTORY)) {
+        if (!isReadableDirectory(directoryUuid, userId)) {
             return List.of();
         }
         if (TRUE.equals(recursive)) {
-            List<UUID> descendentsUuids = repositoryService.findAllDescendantsUuids(directoryUuid).stream().toList();
-            if (descendentsUuids.isEmpty()) {
-                return List.of();
-            }
-            // Need to load references for all descendents (no N+1 -> only one query)
-            List<DirectoryElementEntity> descendents = directoryElementRepository.findAllWithReferencesByIdIn(descendentsUuids);
-            return descendents
-                .stream()
-                .filter(e -> (types.isEmpty() || types.contains(e.getType())) && permissionService.hasReadPermissions(userId, List.of(e.getId())))
-                .map(ElementAttributes::toElementAttributesWithReferences)
+            return walkReadableDescendants(directoryUuid, types, userId)
+                .flatMap(descendants -> toDescendantsAttributes(descendants, types))
                 .toList();
         } else {
             return getAllDirectoryElementsStream(directoryUuid, types, userId).toList();
         }
     }
 
-    private Stream<ElementAttributes> getOnlyElementsStream(UUID directoryUuid, List<String> types, String userId) {
-        return getAllDirectoryElementsStream(directoryUuid, types, userId)
-            .filter(elementAttributes -> !elementAttributes.getType().equals(DIRECTORY));
+    /**
+     * Writes the elements of a directory to the output stream as newline delimited JSON, batch after batch while the
+     * children are read or the subtree is walked, without holding them all in memory.
+     */
+    @Transactional(readOnly = true)
+    public void writeDirectoryElements(UUID directoryUuid, List<String> types, Boolean recursive, String userId, OutputStream outputStream) throws IOException {
+        if (!isReadableDirectory(directoryUuid, userId)) {
+            return;
+        }
+        if (TRUE.equals(recursive)) {
+            elementAttributesStreamWriter.writeBatches(walkReadableDescendants(directoryUuid, types, userId),
+                descendants -> toDescendantsAttributes(descendants, types), outputStream);
+        } else {
+            // the children are read by chunks, their references and permissions being fetched batch after batch
+            try (Stream<DirectoryElementEntity> children = repositoryService.streamAllByParentId(directoryUuid)) {
+                elementAttributesStreamWriter.write(children.filter(e -> isListed(e, types)), batch -> {
+                    repositoryService.fetchReferences(batch);
+                    return toReadableElementsStream(batch, types, userId);
+                }, outputStream);
+            }
+        }
+    }
+
+    private boolean isReadableDirectory(UUID directoryUuid, String userId) {
+        DirectoryElementEntity directory = getDirectoryElementEntity(directoryUuid);
+        return permissionService.hasReadPermission(userId, directory) && directory.getType().equals(DIRECTORY);
+    }
+
+    /**
+     * The readable descendants of a directory, read by a single walk of its subtree: the read permission is evaluated
+     * once per sub-directory, the other elements inheriting the permission of their directory, and the subtrees of the
+     * unreadable sub-directories are not walked, even if some of their own sub-directories are readable.
+     */
+    private Stream<List<DirectoryElementEntity>> walkReadableDescendants(UUID directoryUuid, List<String> types, String userId) {
+        return repositoryService.walkReadableDescendants(directoryUuid, types, permissionService.getUserPrincipals(userId));
+    }
+
+    private static Stream<ElementAttributes> toDescendantsAttributes(List<DirectoryElementEntity> descendants, List<String> types) {
+        // the sub-directories are walked whatever the types, but only returned if their type is requested
+        return descendants.stream()
+            .filter(e -> types.isEmpty() || types.contains(e.getType()))
+            .map(ElementAttributes::toElementAttributesWithReferences);
+    }
+
+    /**
+     * A page of the elements of a directory, sorted by name or last modification date: the cost of a page does not
+     * depend on the size of the directory. The elements which are not readable are skipped, the following ones being
+     * read until the page is full, so only the last page holds fewer elements than the requested size.
+     *
+     * @param cursor the cursor returned with the previous page, null for the first page
+     */
+    @Transactional(readOnly = true)
+    public ElementsPage getDirectoryElementsPage(UUID directoryUuid, List<String> types, ElementsSort sort, String cursor, int size, String userId) {
+        if (size <= 0 || size > ELEMENTS_PAGE_MAX_SIZE) {
+            throw DirectoryException.of(DIRECTORY_INVALID_PAGE_REQUEST, "The page size must be between 1 and %d", ELEMENTS_PAGE_MAX_SIZE);
+        }
+        ElementsCursor after = cursor == null ? null : decodeCursor(cursor, sort);
+        if (!isReadableDirectory(directoryUuid, userId)) {
+            return new ElementsPage(List.of(), null);
+        }
+        List<DirectoryElementEntity> readableChildren = new ArrayList<>();
+        ElementsCursor position = after;
+        // a full page of children may be followed by others
+        boolean hasMore = true;
+        while (hasMore && readableChildren.size() < size) {
+            List<DirectoryElementEntity> children = repositoryService.findChildrenPage(directoryUuid, types, sort, position, size);
+            hasMore = children.size() == size;
+            if (!children.isEmpty()) {
+                position = ElementsCursor.of(sort, children.get(children.size() - 1));
+                readableChildren.addAll(permissionService.getAuthorizedElements(userId, children, PermissionType.READ));
+            }
+        }
+        List<DirectoryElementEntity> pageChildren = readableChildren.size() > size ? readableChildren.subList(0, size) : readableChildren;
+        // the next page starts after the last returned element, not after the last one read
+        String nextCursor = hasMore || readableChildren.size() > size
+            ? ElementsCursor.of(sort, pageChildren.get(pageChildren.size() - 1)).encode()
+            : null;
+        return new ElementsPage(toElementsAttributesStream(pageChildren, types, userId).toList(), nextCursor);
+    }
+
+    private ElementsCursor decodeCursor(String cursor, ElementsSort sort) {
+        ElementsCursor elementsCursor;
+        try {
+            elementsCursor = ElementsCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            elementsCursor = null;
+        }
+        if (elementsCursor == null || elementsCursor.sort() != sort) {
+            throw DirectoryException.of(DIRECTORY_INVALID_PAGE_REQUEST, "Invalid cursor '%s' for a listing sorted by %s", cursor, sort);
+        }
+        return elementsCursor;
     }
 
     private Stream<ElementAttributes> getAllDirectoryElementsStream(UUID directoryUuid, List<String> types, String userId) {
-        List<DirectoryElementEntity> directoryElements = repositoryService.findAllByParentId(directoryUuid);
+        List<DirectoryElementEntity> directoryElements = repositoryService.findAllByParentId(directoryUuid)
+            .stream()
+            .filter(e -> isListed(e, types))
+            .toList();
+        return toReadableElementsStream(directoryElements, types, userId);
+    }
+
+    private static boolean isListed(DirectoryElementEntity element, List<String> types) {
+        return element.getType().equals(DIRECTORY) || types.isEmpty() || types.contains(element.getType());
+    }
+
+    private Stream<ElementAttributes> toReadableElementsStream(List<DirectoryElementEntity> directoryElements, List<String> types, String userId) {
+        return toElementsAttributesStream(permissionService.getAuthorizedElements(userId, directoryElements, PermissionType.READ), types, userId);
+    }
+
+    private Stream<ElementAttributes> toElementsAttributesStream(List<DirectoryElementEntity> directoryElements, List<String> types, String userId) {
         Map<UUID, Long> subdirectoriesCountsMap = getSubDirectoriesCountsMap(types, directoryElements, userId);
         return directoryElements
             .stream()
-            .filter(e -> (e.getType().equals(DIRECTORY) || types.isEmpty() || types.contains(e.getType())) && permissionService.hasReadPermissions(userId, List.of(e.getId())))
             .map(e -> toElementAttributesWithReferences(e, subdirectoriesCountsMap.getOrDefault(e.getId(), 0L)));
     }
 
     public List<ElementAttributes> getRootDirectories(List<String> types, String userId) {
 
-        List<DirectoryElementEntity> directoryElements = repositoryService.findRootDirectories();
-
-        if (!roleService.isUserExploreAdmin()) {
-            directoryElements = directoryElements.stream().filter(directoryElementEntity -> permissionService.hasReadPermissions(userId, List.of(directoryElementEntity.getId()))).toList();
-        }
+        List<DirectoryElementEntity> directoryElements = permissionService.getAuthorizedElements(userId,
+            repositoryService.findRootDirectories(), PermissionType.READ);
         Map<UUID, Long> subdirectoriesCountsMap = getSubDirectoriesCountsMap(types, directoryElements, userId);
         return directoryElements.stream()
             .map(e -> toElementAttributes(e, subdirectoriesCountsMap.getOrDefault(e.getId(), 0L)))
@@ -317,17 +389,19 @@ public class DirectoryService {
         return getSubDirectoriesCounts(directoryElements.stream().map(DirectoryElementEntity::getId).toList(), types, userId);
     }
 
+    @Transactional
     public void updateElement(UUID elementUuid, ElementAttributes newElementAttributes, String userId) {
         DirectoryElementEntity directoryElement = getDirectoryElementEntity(elementUuid);
         if (!directoryElement.isAttributesUpdatable(newElementAttributes, userId) ||
             !directoryElement.getName().equals(newElementAttributes.getElementName()) &&
-                directoryHasElementOfNameAndType(directoryElement.getParentId(), newElementAttributes.getElementName(), directoryElement.getType(), userId)) {
+                directoryElement.getParentId() != null &&
+                repositoryService.directoryHasElementOfNameAndType(directoryElement.getParentId(), newElementAttributes.getElementName(), directoryElement.getType())) {
             throw DirectoryException.of(DIRECTORY_PERMISSION_DENIED,
                 "Update forbidden for element '%s': invalid permissions or duplicate name",
                 directoryElement.getId());
         }
 
-        DirectoryElementEntity elementEntity = repositoryService.saveElement(directoryElement.update(newElementAttributes));
+        DirectoryElementEntity elementEntity = repositoryService.updateElement(directoryElement, newElementAttributes);
 
         notifyDirectoryHasChanged(elementEntity.getParentId() == null ? elementUuid : elementEntity.getParentId(), userId, elementEntity.getName());
     }
@@ -354,11 +428,12 @@ public class DirectoryService {
         notifyDirectoryHasChanged(directoryElementEntity.getParentId() == null ? elementUuid : directoryElementEntity.getParentId(), userId, directoryElementEntity.getName());
     }
 
+    /**
+     * Applies the last modifications of several elements, a modification older than the current one of its element is ignored
+     */
     @Transactional
-    public void updateElementLastModifiedAttributes(UUID elementUuid, Instant lastModificationDate, String lastModifiedBy) {
-        DirectoryElementEntity elementToUpdate = getDirectoryElementEntity(elementUuid);
-        elementToUpdate.updateModificationAttributes(lastModifiedBy, lastModificationDate);
-
+    public void updateElementsLastModifiedAttributes(List<ElementModification> modifications) {
+        repositoryService.updateElementsLastModifiedAttributes(modifications);
     }
 
     private record MovedElement(UUID parentDirectoryUuid, String elementName, boolean isDirectory, boolean isRoot) { }
@@ -367,10 +442,23 @@ public class DirectoryService {
     public void moveElementsDirectory(List<UUID> elementsUuids, UUID newDirectoryUuid, String userId) {
         validateNewDirectory(newDirectoryUuid);
 
-        List<MovedElement> movedElements = elementsUuids.stream()
-                .map(uuid -> moveElementDirectory(getDirectoryElementEntity(uuid), newDirectoryUuid, userId))
-                .filter(Objects::nonNull)
+        // the moved elements are loaded and validated together, those already in the target directory are ignored
+        Map<UUID, DirectoryElementEntity> elementsByUuid = repositoryService.findAllByIdIn(elementsUuids).stream()
+                .collect(Collectors.toMap(DirectoryElementEntity::getId, Function.identity()));
+        List<DirectoryElementEntity> elements = elementsUuids.stream()
+                .distinct()
+                .map(uuid -> Optional.ofNullable(elementsByUuid.get(uuid)).orElseThrow(() -> DirectoryException.createElementNotFound(ELEMENT, uuid)))
+                .filter(element -> !Objects.equals(element.getParentId(), newDirectoryUuid))
                 .toList();
+        if (elements.isEmpty()) {
+            return;
+        }
+        validateElementsForMove(elements, newDirectoryUuid);
+
+        List<MovedElement> movedElements = elements.stream().map(this::toMovedElement).toList();
+
+        // we update the parent of the moving elements, and the paths of their descendents
+        repositoryService.moveElements(elements, newDirectoryUuid);
 
         Map<UUID, List<String>> movedElementsByParentDirectoryUuid = new HashMap<>();
         movedElements.forEach(e ->
@@ -393,50 +481,38 @@ public class DirectoryService {
         });
     }
 
-    private MovedElement moveElementDirectory(DirectoryElementEntity element, UUID newDirectoryUuid, String userId) {
-
-        if (Objects.equals(element.getParentId(), newDirectoryUuid)) { // Same directory ?
-            return null;
-        }
-
+    private MovedElement toMovedElement(DirectoryElementEntity element) {
         UUID oldParentDirectoryUuid = element.getParentId();
-        Optional<DirectoryElementEntity> oldDirectoryEntity = oldParentDirectoryUuid != null ? repositoryService.getElementEntity(oldParentDirectoryUuid) : Optional.empty();
         boolean isDirectory = DIRECTORY.equals(element.getType());
-        boolean isRoot = isDirectory ? oldParentDirectoryUuid == null : oldDirectoryEntity.isEmpty() || oldDirectoryEntity.get().getParentId() == null;
-        List<DirectoryElementEntity> descendents = isDirectory ? repositoryService.findAllDescendants(element.getId()).stream().toList() : List.of();
-
-        // validate move elements
-        validateElementForMove(element, newDirectoryUuid, descendents.stream().map(DirectoryElementEntity::getId).collect(Collectors.toSet()), userId);
-
-        // we update the parent of the moving element
-        updateElementParentDirectory(element, newDirectoryUuid);
-
-        // reindex descendents
-        repositoryService.reindexElements(descendents);
-
-        //Add to notification map
+        boolean isRoot = isDirectory ? oldParentDirectoryUuid == null : oldParentDirectoryUuid == null || repositoryService.isRootDirectory(oldParentDirectoryUuid);
         return new MovedElement(oldParentDirectoryUuid, element.getName(), isDirectory, isRoot);
-
     }
 
-    private void validateElementForMove(DirectoryElementEntity element, UUID newDirectoryUuid, Set<UUID> descendentsUuids, String userId) {
-        if (newDirectoryUuid == element.getId() || descendentsUuids.contains(newDirectoryUuid)) {
+    private void validateElementsForMove(List<DirectoryElementEntity> elements, UUID newDirectoryUuid) {
+        // the target is one of the moved elements or one of their descendants if they are among its ancestors
+        Set<UUID> newDirectoryAncestorsUuids = new HashSet<>(repositoryService.findAllAncestorsUuids(newDirectoryUuid));
+        Optional<DirectoryElementEntity> movedAncestor = elements.stream().filter(element -> newDirectoryAncestorsUuids.contains(element.getId())).findFirst();
+        if (movedAncestor.isPresent()) {
             throw DirectoryException.of(DIRECTORY_MOVE_IN_DESCENDANT_NOT_ALLOWED,
                 "Cannot move element '%s' into one of its descendants",
-                element.getId());
+                movedAncestor.get().getId());
         }
 
-        if (directoryHasElementOfNameAndType(newDirectoryUuid, element.getName(), element.getType(), userId)) {
-            throw DirectoryException.createElementNameAlreadyExists(element.getName());
+        // the names are unique by type in a directory, whatever the permissions of the user
+        List<NameAndType> namesAndTypes = elements.stream().map(element -> new NameAndType(element.getName(), element.getType())).toList();
+        Set<NameAndType> takenNamesAndTypes = new HashSet<>(repositoryService.findExistingNamesAndTypes(newDirectoryUuid, namesAndTypes));
+        for (NameAndType nameAndType : namesAndTypes) {
+            // two moved elements can be in conflict too
+            if (!takenNamesAndTypes.add(nameAndType)) {
+                throw DirectoryException.createElementNameAlreadyExists(nameAndType.name());
+            }
         }
     }
 
-    private void updateElementParentDirectory(DirectoryElementEntity element, UUID newDirectoryUuid) {
-        element.setParentId(newDirectoryUuid);
-        repositoryService.saveElement(element);
-    }
-
     private void validateNewDirectory(UUID newDirectoryUuid) {
+        if (repositoryService.isDirectory(newDirectoryUuid)) {
+            return;
+        }
         DirectoryElementEntity newDirectory = repositoryService.getElementEntity(newDirectoryUuid)
             .orElseThrow(() -> DirectoryException.createElementNotFound(DIRECTORY, newDirectoryUuid));
 
@@ -445,13 +521,6 @@ public class DirectoryService {
         }
     }
 
-    private boolean directoryHasElementOfNameAndType(UUID directoryUUID, String elementName, String elementType, String userId) {
-        return getOnlyElementsStream(directoryUUID, List.of(elementType), userId)
-            .anyMatch(
-                e -> e.getElementName().equals(elementName)
-            );
-    }
-
     @Transactional
     public void deleteElement(UUID elementUuid, String userId) {
         deleteElementWithNotif(elementUuid, userId);
@@ -473,16 +542,15 @@ public class DirectoryService {
 
     private void deleteElement(ElementAttributes elementAttributes, String userId) {
         if (elementAttributes.getType().equals(DIRECTORY)) {
-            deleteSubElements(elementAttributes.getElementUuid(), userId);
+            // the whole subtree is deleted with bulk statements
+            List<UUID> deletedElementsUuids = repositoryService.deleteElementWithDescendants(elementAttributes.getElementUuid());
+            permissionService.deleteAllPermissionsForElements(deletedElementsUuids);
+            notificationService.emitDeletedElements(deletedElementsUuids, userId);
+        } else {
+            repositoryService.deleteElement(elementAttributes.getElementUuid());
+            permissionService.deleteAllPermissionsForElement(elementAttributes.getElementUuid());
+            notificationService.emitDeletedElement(elementAttributes.getElementUuid(), userId);
         }
-        repositoryService.deleteElement(elementAttributes.getElementUuid());
-        permissionService.deleteAllPermissionsForElement(elementAttributes.getElementUuid());
-        notificationService.emitDeletedElement(elementAttributes.getElementUuid(), userId);
-    }
-
-    private void deleteSubElements(UUID directoryUuid, String userId) {
-        repositoryService.findAllByParentId(directoryUuid)
-            .forEach(entity -> deleteElement(toElementAttributes(entity), userId));
     }
 
     /**
@@ -502,9 +570,7 @@ public class DirectoryService {
         repositoryService.deleteElements(elementsAttributesToDelete.stream().map(ElementAttributes::getElementUuid).toList());
 
         // extracting elementUuids from this list, to send element deletion notifications
-        elementsAttributesToDelete.stream()
-            .map(ElementAttributes::getElementUuid)
-            .forEach(elementUuid -> notificationService.emitDeletedElement(elementUuid, userId));
+        notificationService.emitDeletedElements(elementsAttributesToDelete.stream().map(ElementAttributes::getElementUuid).toList(), userId);
 
         // sending directory update notification
         notifyDirectoryHasChanged(parentDirectoryUuid, userId);
@@ -551,28 +617,15 @@ public class DirectoryService {
     }
 
     public UUID getDirectoryUuid(String directoryName, UUID parentDirectoryUuid) {
-        List<DirectoryElementEntity> directories;
         //If parentDirectoryUuid is null we search for a rootDirectory
-        if (parentDirectoryUuid == null) {
-            directories = repositoryService.findRootDirectoriesByName(directoryName);
-        } else {
-            directories = repositoryService.findDirectoriesByNameAndParentId(directoryName, parentDirectoryUuid);
-        }
-        if (!directories.isEmpty()) {
-            return directories.get(0).getId();
-        }
-        return null;
+        return repositoryService.getDirectoryUuid(directoryName, parentDirectoryUuid).orElse(null);
     }
 
     public List<ElementAttributes> getElements(List<UUID> ids, boolean strictMode, List<String> types, String userId) {
         List<DirectoryElementEntity> elementEntities = repositoryService.findAllByIdIn(ids);
 
         //if the user is not an admin we filter out elements he doesn't have the permission on
-        if (!roleService.isUserExploreAdmin()) {
-            elementEntities = elementEntities.stream().filter(directoryElementEntity ->
-                permissionService.hasReadPermissions(userId, List.of(directoryElementEntity.getId()))
-            ).toList();
-        }
+        elementEntities = permissionService.getAuthorizedElements(userId, elementEntities, PermissionType.READ);
 
         if (strictMode && elementEntities.size() != ids.stream().distinct().count()) {
             throw DirectoryException.of(DIRECTORY_SOME_ELEMENTS_ARE_MISSING, "Some requested elements are missing");
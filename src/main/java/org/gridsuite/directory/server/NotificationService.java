@@ -7,18 +7,16 @@
 package org.gridsuite.directory.server;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import lombok.SneakyThrows;
 import org.gridsuite.directory.server.dto.DirectoryInfos;
+import org.gridsuite.directory.server.repository.NotificationOutboxEntity;
 import org.gridsuite.directory.server.services.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.stream.function.StreamBridge;
-import org.springframework.integration.support.MessageBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
-import org.springframework.messaging.Message;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,8 +25,8 @@ import java.util.UUID;
  * @author Chamseddine Benhamed <chamseddine.benhamed at rte-france.com>
  */
 
-// Today we don't send notification inside @Transactional block. If this behavior change, we must make sure
-// that notification is sent only when all the work inside @Transactional method is done
+// The notifications are written to the outbox in the current transaction and published by the relay once it is
+// committed: no message is sent for a rolled back change and the broker is not called by the request thread
 @Service
 public class NotificationService {
     public static final String HEADER_USER_ID = "userId";
@@ -42,24 +40,30 @@ public class NotificationService {
     public static final String HEADER_ELEMENT_UUID = "elementUuid";
     public static final String HEADER_IS_DIRECTORY_MOVING = "isDirectoryMoving";
     public static final String UPDATE_TYPE_ELEMENT_DELETE = "deleteElement";
+    public static final String UPDATE_TYPE_ELEMENTS_DELETE = "deleteElements";
     public static final String HEADER_EXPORT_UUID = "exportUuid";
     public static final String CASE_EXPORT_FINISHED = "caseExportFinished";
-    private static final String CATEGORY_BROKER_OUTPUT = DirectoryService.class.getName() + ".output-broker-messages";
-    private static final Logger MESSAGE_OUTPUT_LOGGER = LoggerFactory.getLogger(CATEGORY_BROKER_OUTPUT);
 
-    @Autowired
-    private StreamBridge directoryUpdatePublisher;
+    protected final ObjectMapper mapper;
 
-    @Autowired
-    protected ObjectMapper mapper;
+    private final NotificationOutboxRelay notificationOutboxRelay;
 
-    public NotificationService(ObjectMapper mapper) {
+    // maximum number of element uuids in the payload of a deleteElements message
+    @Value("${directory.notification.deleted-elements.batch-size:1000}")
+    private int deletedElementsBatchSize;
+
+    // one deleteElement message per element, for the consumers only reading these messages: to disable once they all
+    // read the deleteElements messages
+    @Value("${directory.notification.deleted-elements.per-element:true}")
+    private boolean deletedElementsPerElement;
+
+    public NotificationService(ObjectMapper mapper, NotificationOutboxRelay notificationOutboxRelay) {
         this.mapper = mapper;
+        this.notificationOutboxRelay = notificationOutboxRelay;
     }
 
-    private void sendUpdateMessage(Message<String> message) {
-        MESSAGE_OUTPUT_LOGGER.debug("Sending message : {}", message);
-        directoryUpdatePublisher.send("publishDirectoryUpdate-out-0", message);
+    private void sendUpdateMessage(NotificationOutboxEntity.NotificationOutboxEntityBuilder notification) {
+        notificationOutboxRelay.enqueue(notification.creationDate(Instant.now()).build());
     }
 
     public void emitDirectoryChanged(UUID directoryUuid, String elementName, String userId, String error, boolean isRoot, NotificationType notificationType) {
@@ -69,33 +73,47 @@ public class NotificationService {
     @SneakyThrows
     public void emitDirectoryChanged(List<DirectoryInfos> directoryrInfos, List<String> elementNames, String userId, String error, boolean isDirectoryMoving, NotificationType notificationType) {
 
-        MessageBuilder<String> messageBuilder = MessageBuilder.withPayload("")
-                .setHeader(HEADER_USER_ID, userId)
-                .setHeader(HEADER_ELEMENT_NAMES, elementNames)
-                .setHeader(HEADER_DIRECTORIES_INFOS, mapper.writeValueAsString(directoryrInfos)) // exception could be thrown here
-                .setHeader(HEADER_IS_PUBLIC_DIRECTORY, true) // null may only come from borked REST request
-                .setHeader(HEADER_NOTIFICATION_TYPE, notificationType)
-                .setHeader(HEADER_UPDATE_TYPE, UPDATE_TYPE_DIRECTORIES)
-                .setHeader(HEADER_IS_DIRECTORY_MOVING, isDirectoryMoving)
-                .setHeader(HEADER_ERROR, error);
-        sendUpdateMessage(messageBuilder.build());
+        sendUpdateMessage(NotificationOutboxEntity.builder()
+                .userId(userId)
+                .elementNames(elementNames == null ? null : mapper.writeValueAsString(elementNames))
+                .directoriesInfos(mapper.writeValueAsString(directoryrInfos)) // exception could be thrown here
+                .notificationType(notificationType == null ? null : notificationType.name())
+                .updateType(UPDATE_TYPE_DIRECTORIES)
+                .isDirectoryMoving(isDirectoryMoving)
+                .error(error));
     }
 
     public void emitDeletedElement(UUID elementUuid, String userId) {
-        MessageBuilder<String> messageBuilder = MessageBuilder.withPayload("")
-                .setHeader(HEADER_USER_ID, userId)
-                .setHeader(HEADER_ELEMENT_UUID, elementUuid)
-                .setHeader(HEADER_UPDATE_TYPE, UPDATE_TYPE_ELEMENT_DELETE);
-        sendUpdateMessage(messageBuilder.build());
+        sendUpdateMessage(NotificationOutboxEntity.builder()
+                .userId(userId)
+                .elementUuid(elementUuid)
+                .updateType(UPDATE_TYPE_ELEMENT_DELETE));
+    }
+
+    /**
+     * Notifies the deletion of several elements with deleteElements messages, the uuids of the deleted elements
+     * being serialized as a JSON array in the payload. A single deletion keeps the deleteElement message.
+     */
+    @SneakyThrows
+    public void emitDeletedElements(List<UUID> elementUuids, String userId) {
+        if (deletedElementsPerElement || elementUuids.size() == 1) {
+            elementUuids.forEach(elementUuid -> emitDeletedElement(elementUuid, userId));
+            return;
+        }
+        for (List<UUID> batch : Lists.partition(elementUuids, deletedElementsBatchSize)) {
+            sendUpdateMessage(NotificationOutboxEntity.builder()
+                    .payload(mapper.writeValueAsString(batch))
+                    .userId(userId)
+                    .updateType(UPDATE_TYPE_ELEMENTS_DELETE));
+        }
     }
 
     public void emitCaseExportFinished(String userId, UUID exportUuid, @Nullable String error) {
-        MessageBuilder<String> messageBuilder = MessageBuilder.withPayload("")
-                .setHeader(HEADER_USER_ID, userId)
-                .setHeader(HEADER_EXPORT_UUID, exportUuid)
-                .setHeader(HEADER_ERROR, error)
-                .setHeader(HEADER_NOTIFICATION_TYPE, CASE_EXPORT_FINISHED)
-                .setHeader(HEADER_UPDATE_TYPE, UPDATE_TYPE_DIRECTORIES);
-        sendUpdateMessage(messageBuilder.build());
+        sendUpdateMessage(NotificationOutboxEntity.builder()
+                .userId(userId)
+                .exportUuid(exportUuid)
+                .error(error)
+                .notificationType(CASE_EXPORT_FINISHED)
+                .updateType(UPDATE_TYPE_DIRECTORIES));
     }
 }
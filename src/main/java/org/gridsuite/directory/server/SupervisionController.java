@@ -10,15 +10,18 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestClient;
 import org.gridsuite.directory.server.dto.ElementAttributes;
+import org.gridsuite.directory.server.dto.ReindexJobInfos;
 import org.gridsuite.directory.server.services.DirectoryElementInfosService;
 import org.gridsuite.directory.server.services.SupervisionService;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
@@ -59,6 +62,14 @@ public class SupervisionController {
         return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.getAllElementsByType(elementType));
     }
 
+    @GetMapping(value = "/elements", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Get all elements of a given type, streamed as newline delimited JSON")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Elements matching the given type, one per line")})
+    public void getAllElementsStream(@RequestParam(value = "elementType") String elementType, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        service.writeAllElementsByType(elementType, response.getOutputStream());
+    }
+
     @GetMapping(value = "/elements/unmodified")
     @Operation(summary = "Get all elements of a given type where the last modification date exceed the given duration")
     @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "List of elements matching the given type exceeding the given duration")})
@@ -67,6 +78,15 @@ public class SupervisionController {
         return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.getUnmodifiedElementsByType(elementType, duration));
     }
 
+    @GetMapping(value = "/elements/unmodified", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Get all elements of a given type where the last modification date exceed the given duration, streamed as newline delimited JSON")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Elements matching the given type exceeding the given duration, one per line")})
+    public void getUnmodifiedElementsStream(@RequestParam(value = "elementType") String elementType, @RequestParam Duration duration,
+                                            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        service.writeUnmodifiedElementsByType(elementType, duration, response.getOutputStream());
+    }
+
     @GetMapping(value = "/elasticsearch-host")
     @Operation(summary = "get the elasticsearch address")
     @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "the elasticsearch address")})
@@ -103,11 +123,59 @@ public class SupervisionController {
         return ResponseEntity.ok().build();
     }
 
-    @PostMapping(value = "/elements/reindex")
-    @Operation(summary = "reindex all elements")
-    @ApiResponse(responseCode = "200", description = "Elements reindexed")
-    public ResponseEntity<Void> reindexElements() {
-        service.reindexElements();
+    @PostMapping(value = "/elements/index/rebuild")
+    @Operation(summary = "Rebuild the Elasticsearch index in a new index replacing the live one once filled, in the background")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Rebuild started, the id of the job is returned"),
+        @ApiResponse(responseCode = "409", description = "A reindex job is already running")
+    })
+    public ResponseEntity<UUID> rebuildESIndex() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.rebuildIndex());
+    }
+
+    @GetMapping(value = "/directories/tree-index/size")
+    @Operation(summary = "get the number of directories in the in memory directories tree index")
+    @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Directories tree index size")})
+    public ResponseEntity<String> getDirectoryTreeIndexSize() {
+        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(Integer.toString(service.getDirectoryTreeIndexSize()));
+    }
+
+    @PostMapping(value = "/directories/tree-index/rebuild")
+    @Operation(summary = "Reload the in memory directories tree index from the database")
+    @ApiResponse(responseCode = "200", description = "Directories tree index rebuilt")
+    public ResponseEntity<Void> rebuildDirectoryTreeIndex() {
+        service.rebuildDirectoryTreeIndex();
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping(value = "/elements/reindex")
+    @Operation(summary = "reindex all elements, in the background")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Reindexation started, the id of the job is returned"),
+        @ApiResponse(responseCode = "409", description = "A reindex job is already running")
+    })
+    public ResponseEntity<UUID> reindexElements() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.reindexElements());
+    }
+
+    @GetMapping(value = "/elements/reindex/jobs/{jobId}")
+    @Operation(summary = "get the progress of a reindex job")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "The reindex job"),
+        @ApiResponse(responseCode = "404", description = "The reindex job has not been found")
+    })
+    public ResponseEntity<ReindexJobInfos> getReindexJob(@PathVariable("jobId") UUID jobId) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.getReindexJob(jobId));
+    }
+
+    @PostMapping(value = "/elements/reindex/jobs/{jobId}/resume")
+    @Operation(summary = "resume a failed reindex job, or a job whose instance stopped, from its last checkpoint")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Reindex job resumed"),
+        @ApiResponse(responseCode = "404", description = "The reindex job has not been found"),
+        @ApiResponse(responseCode = "409", description = "The reindex job cannot be resumed or another one is running")
+    })
+    public ResponseEntity<UUID> resumeReindexJob(@PathVariable("jobId") UUID jobId) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(service.resumeReindexJob(jobId));
+    }
 }
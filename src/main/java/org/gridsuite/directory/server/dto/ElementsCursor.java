@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.dto;
+
+import org.gridsuite.directory.server.repository.DirectoryElementEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of the last element of a page in a paginated directory listing, given to the clients as an opaque string
+ *
+ * @param value the sort key of the last element: its name or its last modification date, empty if it has none
+ *
+ * @author agent <agent at local>
+ */
+public record ElementsCursor(ElementsSort sort, UUID id, String value) {
+    private static final String SEPARATOR = ":";
+
+    public static ElementsCursor of(ElementsSort sort, DirectoryElementEntity lastElement) {
+        String value = switch (sort) {
+            case NAME -> lastElement.getName();
+            case LAST_MODIFICATION_DATE -> lastElement.getLastModificationDate() == null ? "" : lastElement.getLastModificationDate().toString();
+        };
+        return new ElementsCursor(sort, lastElement.getId(), value);
+    }
+
+    /**
+     * @return null if the last element has no last modification date
+     */
+    public Instant getLastModificationDate() {
+        return value.isEmpty() ? null : Instant.parse(value);
+    }
+
+    public String encode() {
+        // the value is last, it can contain the separator
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((sort + SEPARATOR + id + SEPARATOR + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}
+     */
+    public static ElementsCursor decode(String cursor) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        ElementsCursor elementsCursor = new ElementsCursor(ElementsSort.valueOf(parts[0]), UUID.fromString(parts[1]), parts[2]);
+        if (elementsCursor.sort() == ElementsSort.LAST_MODIFICATION_DATE) {
+            try {
+                elementsCursor.getLastModificationDate();
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+        }
+        return elementsCursor;
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.dto;
+
+import java.util.List;
+
+/**
+ * Page of a directory listing
+ *
+ * @param nextCursor the encoded cursor of the next page, null on the last page
+ *
+ * @author agent <agent at local>
+ */
+public record ElementsPage(List<ElementAttributes> elements, String nextCursor) {
+}
@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.dto;
+
+/**
+ * Order of a paginated directory listing, the ties being broken by the element uuid
+ *
+ * @author agent <agent at local>
+ */
+public enum ElementsSort {
+    // ascending names
+    NAME,
+    // most recently modified first
+    LAST_MODIFICATION_DATE,
+}
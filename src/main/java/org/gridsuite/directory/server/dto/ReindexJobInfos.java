@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.dto;
+
+import org.gridsuite.directory.server.repository.ReindexJobEntity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * @param documentsPerSecond indexing rate of the current run
+ * @param estimatedEndDate estimated from the indexing rate of the current run, null when unknown or ended
+ *
+ * @author agent <agent at local>
+ */
+public record ReindexJobInfos(UUID id, ReindexJobEntity.Type type, String indexName, ReindexJobEntity.Status status,
+                              long totalCount, long indexedCount, UUID lastElementId, double documentsPerSecond,
+                              Instant estimatedEndDate, Instant creationDate, Instant updateDate, Instant endDate, String error) {
+
+    public static ReindexJobInfos toReindexJobInfos(ReindexJobEntity job) {
+        long runMillis = Duration.between(job.getRunStartDate(), job.getUpdateDate()).toMillis();
+        double documentsPerSecond = runMillis > 0 ? (job.getIndexedCount() - job.getRunStartCount()) * 1000.0 / runMillis : 0;
+        Instant estimatedEndDate = null;
+        if (job.getStatus() == ReindexJobEntity.Status.RUNNING && documentsPerSecond > 0) {
+            long remainingCount = Math.max(job.getTotalCount() - job.getIndexedCount(), 0);
+            estimatedEndDate = job.getUpdateDate().plusMillis((long) (remainingCount * 1000 / documentsPerSecond));
+        }
+        return new ReindexJobInfos(job.getId(), job.getType(), job.getIndexName(), job.getStatus(), job.getTotalCount(),
+            job.getIndexedCount(), job.getLastElementId(), documentsPerSecond, estimatedEndDate, job.getCreationDate(),
+            job.getUpdateDate(), job.getEndDate(), job.getError());
+    }
+}
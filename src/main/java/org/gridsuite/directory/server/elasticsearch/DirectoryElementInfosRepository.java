@@ -14,5 +14,5 @@ import java.util.UUID;
 /**
  * @author Ghazwa Rehili <ghazwa.rehili at rte-france.com>
  */
-public interface DirectoryElementInfosRepository extends ElasticsearchRepository<DirectoryElementInfos, UUID> {
+public interface DirectoryElementInfosRepository extends ElasticsearchRepository<DirectoryElementInfos, UUID>, DirectoryElementInfosRepositoryCustom {
 }
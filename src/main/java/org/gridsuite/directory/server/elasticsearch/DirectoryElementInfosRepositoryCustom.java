@@ -0,0 +1,43 @@
+/*
+  Copyright (c) 2026, RTE (http://www.rte-france.com)
+  This Source Code Form is subject to the terms of the Mozilla Public
+  License, v. 2.0. If a copy of the MPL was not distributed with this
+  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.elasticsearch;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Operations on the directory elements index that are not derived from the repository methods
+ *
+ * @author agent <agent at local>
+ */
+public interface DirectoryElementInfosRepositoryCustom {
+
+    String NAME_FIELD = "name";
+    String LAST_MODIFICATION_DATE_FIELD = "lastModificationDate";
+
+    /**
+     * Deletes the document of an element and the documents of all its descendants with a single delete by query
+     */
+    void deleteSubtree(UUID elementUuid);
+
+    /**
+     * Applies the operations in order, the consecutive index, update and delete operations being sent in a single bulk
+     * request. An update only changes the given fields and does not create a missing document.
+     * A failure that may not happen again (missing document, rejected document...) is only logged.
+     *
+     * @param refresh whether the changes are made visible to the searches before returning
+     * @throws org.springframework.dao.DataAccessException if the operations may succeed later (unavailable cluster,
+     * too many requests...), the operations are idempotent and may be all applied again
+     */
+    void bulk(List<ElementInfosOperation> operations, boolean refresh);
+
+    /**
+     * Same as {@link #bulk(List, boolean)} on another index than the one of the repository (the index being built by
+     * a reindexation...)
+     */
+    void bulk(List<ElementInfosOperation> operations, boolean refresh, String indexName);
+}
@@ -0,0 +1,200 @@
+/*
+  Copyright (c) 2026, RTE (http://www.rte-france.com)
+  This Source Code Form is subject to the terms of the Mozilla Public
+  License, v. 2.0. If a copy of the MPL was not distributed with this
+  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.elasticsearch;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.Queries;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchDateConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.ScriptType;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @author agent <agent at local>
+ */
+public class DirectoryElementInfosRepositoryCustomImpl implements DirectoryElementInfosRepositoryCustom {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryElementInfosRepositoryCustomImpl.class);
+
+    // format of the date fields of DirectoryElementInfos
+    private static final ElasticsearchDateConverter DATE_CONVERTER = ElasticsearchDateConverter.of(DateFormat.date_time);
+
+    static final String PATH_UUID = "pathUuid.keyword";
+
+    // A document is rewritten only if its path is the old prefix followed by the moved or renamed element, and only if
+    // its paths change: a document rewritten by a previous run is left unchanged
+    private static final String UPDATE_SUBTREE_PATHS_SCRIPT = """
+            int n = params.oldPathUuid.size();
+            List pathUuid = ctx._source.pathUuid;
+            List pathName = ctx._source.pathName;
+            if (pathUuid != null && pathName != null && pathUuid.size() > n && pathName.size() > n
+                    && pathUuid.subList(0, n).equals(params.oldPathUuid) && pathUuid.get(n) == params.elementUuid) {
+                List newPathUuid = new ArrayList(params.newPathUuid);
+                newPathUuid.addAll(pathUuid.subList(n, pathUuid.size()));
+                List newPathName = new ArrayList(params.newPathName);
+                newPathName.add(params.elementName);
+                newPathName.addAll(pathName.subList(n + 1, pathName.size()));
+                if (newPathUuid.equals(pathUuid) && newPathName.equals(pathName)) {
+                    ctx.op = 'noop';
+                } else {
+                    ctx._source.pathUuid = newPathUuid;
+                    ctx._source.pathName = newPathName;
+                }
+            } else {
+                ctx.op = 'noop';
+            }
+            """;
+
+    private static final int CONFLICT = 409;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int INTERNAL_SERVER_ERROR = 500;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    public DirectoryElementInfosRepositoryCustomImpl(ElasticsearchOperations elasticsearchOperations, ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    @Override
+    public void deleteSubtree(UUID elementUuid) {
+        deleteSubtree(elementUuid, getIndexName());
+    }
+
+    private void deleteSubtree(UUID elementUuid, String indexName) {
+        // pathUuid holds the ancestors of an element, the element itself is matched by its id
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(BoolQuery.of(b -> b
+                        .should(Queries.termQuery(PATH_UUID, elementUuid.toString())._toQuery())
+                        .should(Queries.idsQuery(List.of(elementUuid.toString()))._toQuery()))
+                        ._toQuery())
+                .build();
+        elasticsearchOperations.delete(DeleteQuery.builder(query).withRefresh(true).build(), DirectoryElementInfos.class, IndexCoordinates.of(indexName));
+    }
+
+    /**
+     * Rewrites the ancestors prefix of the paths of the descendants of a moved element with a single update by query,
+     * without reading the documents. Only the paths made of the old prefix followed by the moved element are rewritten,
+     * so applying the operation again, when a batch is retried, leaves the already rewritten documents unchanged
+     */
+    private void updateSubtreePaths(ElementInfosOperation operation, String indexName) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(Queries.termQuery(PATH_UUID, operation.elementUuid().toString())._toQuery())
+                .build();
+        UpdateQuery updateQuery = UpdateQuery.builder(query)
+                .withScriptType(ScriptType.INLINE)
+                .withLang("painless")
+                .withScript(UPDATE_SUBTREE_PATHS_SCRIPT)
+                .withParams(operation.fields())
+                .withRefreshPolicy(RefreshPolicy.IMMEDIATE)
+                .build();
+        elasticsearchOperations.updateByQuery(updateQuery, IndexCoordinates.of(indexName));
+    }
+
+    @Override
+    public void bulk(List<ElementInfosOperation> operations, boolean refresh) {
+        bulk(operations, refresh, getIndexName());
+    }
+
+    @Override
+    public void bulk(List<ElementInfosOperation> operations, boolean refresh, String indexName) {
+        List<BulkOperation> bulkOperations = new ArrayList<>();
+        for (ElementInfosOperation operation : operations) {
+            if (operation.type() == ElementInfosOperation.Type.DELETE_SUBTREE || operation.type() == ElementInfosOperation.Type.MOVE_SUBTREE) {
+                // a by query operation cannot be part of a bulk request and only matches the searchable documents:
+                // the previous operations are sent and refreshed first
+                executeBulk(bulkOperations, true, indexName);
+                bulkOperations.clear();
+                if (operation.type() == ElementInfosOperation.Type.DELETE_SUBTREE) {
+                    deleteSubtree(operation.elementUuid(), indexName);
+                } else {
+                    updateSubtreePaths(operation, indexName);
+                }
+            } else {
+                bulkOperations.add(toBulkOperation(operation));
+            }
+        }
+        executeBulk(bulkOperations, refresh, indexName);
+    }
+
+    private String getIndexName() {
+        return elasticsearchOperations.getIndexCoordinatesFor(DirectoryElementInfos.class).getIndexName();
+    }
+
+    private BulkOperation toBulkOperation(ElementInfosOperation operation) {
+        String id = operation.elementUuid().toString();
+        return switch (operation.type()) {
+            case INDEX -> {
+                Document document = elasticsearchOperations.getElasticsearchConverter().mapObject(operation.document());
+                yield BulkOperation.of(b -> b.index(i -> i.id(id).document(document)));
+            }
+            case CREATE -> {
+                Document document = elasticsearchOperations.getElasticsearchConverter().mapObject(operation.document());
+                yield BulkOperation.of(b -> b.create(c -> c.id(id).document(document)));
+            }
+            case UPDATE -> {
+                Map<String, Object> fields = new HashMap<>();
+                operation.fields().forEach((field, value) -> fields.put(field, value instanceof Instant instant ? DATE_CONVERTER.format(instant) : value));
+                yield BulkOperation.of(b -> b.update(u -> u.id(id).action(a -> a.doc(fields))));
+            }
+            case DELETE -> BulkOperation.of(b -> b.delete(d -> d.id(id)));
+            case DELETE_SUBTREE, MOVE_SUBTREE -> throw new IllegalArgumentException("A subtree operation is not a bulk operation");
+        };
+    }
+
+    private void executeBulk(List<BulkOperation> bulkOperations, boolean refresh, String indexName) {
+        if (bulkOperations.isEmpty()) {
+            return;
+        }
+        BulkResponse response;
+        try {
+            response = elasticsearchClient.bulk(b -> b.index(indexName).operations(bulkOperations).refresh(refresh ? Refresh.True : Refresh.False));
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Unable to send the bulk request to the directory elements index", e);
+        }
+        if (response.errors()) {
+            // a document already created is newer than the one to create
+            List<BulkResponseItem> failedItems = response.items().stream()
+                    .filter(item -> item.error() != null && !(item.operationType() == OperationType.Create && item.status() == CONFLICT))
+                    .toList();
+            if (failedItems.isEmpty()) {
+                return;
+            }
+            if (failedItems.stream().anyMatch(item -> item.status() == TOO_MANY_REQUESTS || item.status() >= INTERNAL_SERVER_ERROR)) {
+                throw new TransientDataAccessResourceException("Bulk request on the directory elements index partially failed: " + failedItems.size() + " failed operations");
+            }
+            // the documents missing or rejected are restored by the next reindexation, the database stays the reference
+            LOGGER.warn("Bulk operations failed on the documents of elements {}", failedItems.stream().map(BulkResponseItem::id).toList());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+  Copyright (c) 2026, RTE (http://www.rte-france.com)
+  This Source Code Form is subject to the terms of the Mozilla Public
+  License, v. 2.0. If a copy of the MPL was not distributed with this
+  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.elasticsearch;
+
+import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Write operation on the document of an element
+ *
+ * @param document the whole document, for an INDEX or CREATE operation only
+ * @param fields the new values of the updated fields for an UPDATE operation, the parameters of the path rewriting for
+ *               a MOVE_SUBTREE operation, which also renames the moved element in the paths of its descendants
+ *
+ * @author agent <agent at local>
+ */
+public record ElementInfosOperation(Type type, UUID elementUuid, DirectoryElementInfos document, Map<String, Object> fields) {
+
+    public enum Type {
+        INDEX,
+        // an INDEX that does not replace an existing document
+        CREATE,
+        UPDATE,
+        DELETE,
+        // the element and all its descendants
+        DELETE_SUBTREE,
+        // the paths of the descendants of a moved element
+        MOVE_SUBTREE
+    }
+
+    private static final String OLD_PATH_UUID_PARAM = "oldPathUuid";
+    private static final String NEW_PATH_UUID_PARAM = "newPathUuid";
+    private static final String NEW_PATH_NAME_PARAM = "newPathName";
+    private static final String ELEMENT_UUID_PARAM = "elementUuid";
+    private static final String ELEMENT_NAME_PARAM = "elementName";
+
+    public static ElementInfosOperation index(DirectoryElementInfos document) {
+        return new ElementInfosOperation(Type.INDEX, document.getId(), document, null);
+    }
+
+    public static ElementInfosOperation create(DirectoryElementInfos document) {
+        return new ElementInfosOperation(Type.CREATE, document.getId(), document, null);
+    }
+
+    public static ElementInfosOperation update(UUID elementUuid, Map<String, Object> fields) {
+        return new ElementInfosOperation(Type.UPDATE, elementUuid, null, fields);
+    }
+
+    public static ElementInfosOperation delete(UUID elementUuid) {
+        return new ElementInfosOperation(Type.DELETE, elementUuid, null, null);
+    }
+
+    public static ElementInfosOperation deleteSubtree(UUID elementUuid) {
+        return new ElementInfosOperation(Type.DELETE_SUBTREE, elementUuid, null, null);
+    }
+
+    /**
+     * @param oldAncestorsUuids the ancestors of the moved element before the move, replaced in the paths of its descendants
+     * @param newAncestorsUuids the ancestors of the moved element after the move, the old ones for a renamed element
+     */
+    public static ElementInfosOperation moveSubtree(UUID elementUuid, String elementName, List<UUID> oldAncestorsUuids, List<UUID> newAncestorsUuids, List<String> newAncestorsNames) {
+        return new ElementInfosOperation(Type.MOVE_SUBTREE, elementUuid, null, Map.of(
+            ELEMENT_UUID_PARAM, elementUuid.toString(),
+            ELEMENT_NAME_PARAM, elementName,
+            OLD_PATH_UUID_PARAM, oldAncestorsUuids.stream().map(UUID::toString).toList(),
+            NEW_PATH_UUID_PARAM, newAncestorsUuids.stream().map(UUID::toString).toList(),
+            NEW_PATH_NAME_PARAM, newAncestorsNames));
+    }
+}
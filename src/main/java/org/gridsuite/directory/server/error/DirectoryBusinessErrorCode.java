@@ -22,8 +22,11 @@ public enum DirectoryBusinessErrorCode implements BusinessErrorCode {
     DIRECTORY_NOT_DIRECTORY("directory.notDirectory"),
     DIRECTORY_ELEMENT_NAME_CONFLICT("directory.elementNameConflict"),
     DIRECTORY_MOVE_IN_DESCENDANT_NOT_ALLOWED("directory.moveInDescendantNotAllowed"),
+    DIRECTORY_MAX_DEPTH_EXCEEDED("directory.maxDepthExceeded"),
     DIRECTORY_SOME_ELEMENTS_ARE_MISSING("directory.someElementsAreMissing"),
-    DIRECTORY_ELEMENT_NOT_FOUND("directory.elementNotFound");
+    DIRECTORY_ELEMENT_NOT_FOUND("directory.elementNotFound"),
+    DIRECTORY_INVALID_PAGE_REQUEST("directory.invalidPageRequest"),
+    DIRECTORY_INDEXING_BACKLOG_FULL("directory.indexingBacklogFull");
     private final String code;
 
     DirectoryBusinessErrorCode(String code) {
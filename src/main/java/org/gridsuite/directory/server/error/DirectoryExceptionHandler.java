@@ -39,13 +39,16 @@ public class DirectoryExceptionHandler
         return switch (errorCode) {
             case DIRECTORY_ELEMENT_NOT_FOUND, DIRECTORY_SOME_ELEMENTS_ARE_MISSING -> HttpStatus.NOT_FOUND;
             case DIRECTORY_ELEMENT_NAME_CONFLICT -> HttpStatus.CONFLICT;
+            case DIRECTORY_INVALID_PAGE_REQUEST -> HttpStatus.BAD_REQUEST;
+            case DIRECTORY_INDEXING_BACKLOG_FULL -> HttpStatus.SERVICE_UNAVAILABLE;
             case DIRECTORY_PERMISSION_DENIED,
                  DIRECTORY_PARENT_PERMISSION_DENIED,
                  DIRECTORY_TARGET_PERMISSION_DENIED,
                  DIRECTORY_CHILD_PERMISSION_DENIED,
                  DIRECTORY_ELEMENT_NAME_BLANK,
                  DIRECTORY_NOT_DIRECTORY,
-                 DIRECTORY_MOVE_IN_DESCENDANT_NOT_ALLOWED -> HttpStatus.FORBIDDEN;
+                 DIRECTORY_MOVE_IN_DESCENDANT_NOT_ALLOWED,
+                 DIRECTORY_MAX_DEPTH_EXCEEDED -> HttpStatus.FORBIDDEN;
         };
     }
 
@@ -21,13 +21,18 @@ import static org.gridsuite.directory.server.DirectoryService.DIRECTORY;
 
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 @Entity
 @Table(name = "element", indexes = {@Index(name = "directoryElementEntity_parentId_index", columnList = "parentId"),
-    @Index(name = "directoryElementEntity_parentId_name_type_index", columnList = "parentId, name, type", unique = true)
+    @Index(name = "directoryElementEntity_parentId_name_type_index", columnList = "parentId, name, type", unique = true),
+    @Index(name = "directoryElementEntity_path_index", columnList = "path")
 })
 public class DirectoryElementEntity {
+    public static final String PATH_SEPARATOR = "/";
+    public static final String NAME_PATH_SEPARATOR = "\u001F";
+    // Depth of the deepest element of a tree, a root directory being at depth 1: the path holds one uuid per level and
+    // must fit in its column and in the entries of its index (at most 2704 bytes on PostgreSQL)
+    public static final int MAX_DEPTH = 64;
 
     @Id
     @Column(name = "id")
@@ -64,6 +69,29 @@ public class DirectoryElementEntity {
     )
     private List<ReferenceEmbeddable> references = new ArrayList<>();
 
+    // Materialized paths from the root directory to this element (included): uuids separated by PATH_SEPARATOR
+    // and names separated by NAME_PATH_SEPARATOR
+    @Column(name = "path", length = 4000)
+    private String path;
+
+    @Column(name = "namePath", columnDefinition = "CLOB")
+    private String namePath;
+
+    public DirectoryElementEntity(UUID id, UUID parentId, String name, String type, String owner, String description,
+                                  Instant creationDate, Instant lastModificationDate, String lastModifiedBy,
+                                  List<ReferenceEmbeddable> references) {
+        this.id = id;
+        this.parentId = parentId;
+        this.name = name;
+        this.type = type;
+        this.owner = owner;
+        this.description = description;
+        this.creationDate = creationDate;
+        this.lastModificationDate = lastModificationDate;
+        this.lastModifiedBy = lastModifiedBy;
+        this.references = references;
+    }
+
     // Return a list that cannot be modified to avoid side effects
     public List<ReferenceEmbeddable> getReferences() {
         return Collections.unmodifiableList(references);
@@ -73,6 +101,9 @@ public class DirectoryElementEntity {
         boolean isElementNameUpdated = StringUtils.isNotBlank(newElementAttributes.getElementName());
         if (isElementNameUpdated) {
             this.name = newElementAttributes.getElementName();
+            if (namePath != null) {
+                this.namePath = namePath.substring(0, namePath.lastIndexOf(NAME_PATH_SEPARATOR) + 1) + name;
+            }
         }
 
         boolean isDescriptionUpdated = Objects.nonNull(newElementAttributes.getDescription());
@@ -103,15 +134,56 @@ public class DirectoryElementEntity {
             Objects.isNull(newElementAttributes.getLastModifiedBy());
     }
 
-    public DirectoryElementInfos toDirectoryElementInfos(List<DirectoryElementEntity> path) {
+    /**
+     * Computes the materialized paths of this element from the ones of its parent directory
+     *
+     * @param parent the parent directory, null for a root directory
+     */
+    public void updatePaths(DirectoryElementEntity parent) {
+        this.path = parent == null ? id.toString() : parent.getPath() + PATH_SEPARATOR + id;
+        this.namePath = parent == null ? name : parent.getNamePath() + NAME_PATH_SEPARATOR + name;
+    }
+
+    // Uuids of the directories from the root directory to the parent of this element
+    public List<UUID> getAncestorsUuids() {
+        return getAncestorsUuids(path);
+    }
+
+    // Names of the directories from the root directory to the parent of this element
+    public List<String> getAncestorsNames() {
+        return getAncestorsNames(namePath);
+    }
+
+    public static List<UUID> getAncestorsUuids(String path) {
+        return getAncestorsSegments(path, PATH_SEPARATOR).stream().map(UUID::fromString).toList();
+    }
+
+    public static List<String> getAncestorsNames(String namePath) {
+        return getAncestorsSegments(namePath, NAME_PATH_SEPARATOR);
+    }
+
+    private static List<String> getAncestorsSegments(String materializedPath, String separator) {
+        if (materializedPath == null) {
+            return List.of();
+        }
+        List<String> segments = List.of(materializedPath.split(separator, -1));
+        return segments.subList(0, segments.size() - 1);
+    }
+
+    // 1 for a root directory
+    public int getDepth() {
+        return getAncestorsUuids().size() + 1;
+    }
+
+    public DirectoryElementInfos toDirectoryElementInfos() {
         return DirectoryElementInfos.builder()
                 .id(getId())
                 .name(getName())
                 .owner(getOwner())
                 .parentId(getParentId() == null ? getId() : getParentId())
                 .type(getType())
-                .pathUuid(path.stream().map(DirectoryElementEntity::getId).toList())
-                .pathName(path.stream().map(DirectoryElementEntity::getName).toList())
+                .pathUuid(getAncestorsUuids())
+                .pathName(getAncestorsNames())
                 .lastModificationDate(getLastModificationDate())
                 .build();
     }
@@ -6,24 +6,35 @@
  */
 package org.gridsuite.directory.server.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 /**
  * @author Nicolas Noir <nicolas.noir at rte-france.com>
  * @author Chamseddine Benhamed <chamseddine.benhamed at rte-france.com>
  */
 @Repository
-public interface DirectoryElementRepository extends JpaRepository<DirectoryElementEntity, UUID> {
+public interface DirectoryElementRepository extends JpaRepository<DirectoryElementEntity, UUID>, DirectoryElementRepositoryCustom {
 
     @EntityGraph(attributePaths = {"references"}, type = EntityGraph.EntityGraphType.LOAD)
     List<DirectoryElementEntity> findAllByParentId(UUID parentId);
@@ -32,6 +43,18 @@ public interface DirectoryElementRepository extends JpaRepository<DirectoryEleme
 
     List<DirectoryElementEntity> findAllByTypeAndLastModificationDateBeforeOrderByLastModificationDateDesc(String type, Instant lastModificationDate);
 
+    // Rows fetched from the database by chunks while the stream is read, it must be consumed and closed in a transaction
+    String STREAM_FETCH_SIZE = "1000";
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<DirectoryElementEntity> streamAllByType(String type);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<DirectoryElementEntity> streamAllByParentId(UUID parentId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<DirectoryElementEntity> streamAllByTypeAndLastModificationDateBeforeOrderByLastModificationDateDesc(String type, Instant lastModificationDate);
+
     List<DirectoryElementEntity> findAllByIdIn(List<UUID> uuids);
 
     @EntityGraph(attributePaths = {"references"}, type = EntityGraph.EntityGraphType.LOAD)
@@ -44,6 +67,12 @@ public interface DirectoryElementRepository extends JpaRepository<DirectoryEleme
     @Query("DELETE FROM DirectoryElementEntity d WHERE d.id IN :elementsUuids")
     void deleteAllById(List<UUID> elementsUuids);
 
+    // The references are not removed by the bulk delete of their elements
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM reference WHERE element_id IN :elementsUuids", nativeQuery = true)
+    void deleteAllReferencesByElementIdIn(List<UUID> elementsUuids);
+
     @Query("SELECT d FROM DirectoryElementEntity d " +
             "WHERE d.parentId IS NULL " +
             "AND d.type = 'DIRECTORY'")
@@ -55,6 +84,10 @@ public interface DirectoryElementRepository extends JpaRepository<DirectoryEleme
     @Query("SELECT d FROM DirectoryElementEntity d  WHERE d.type = 'DIRECTORY' AND d.name=:name AND d.parentId=:parentId")
     List<DirectoryElementEntity> findDirectoriesByNameAndParentId(String name, UUID parentId);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM DirectoryElementEntity d WHERE d.id = :id")
+    Optional<DirectoryElementEntity> findByIdForUpdate(UUID id);
+
     @Query("SELECT name FROM DirectoryElementEntity WHERE parentId=:parentId AND type=:type AND name like :name%")
     List<String> getNameByTypeAndParentIdAndNameStartWith(String type, UUID parentId, String name);
 
@@ -70,55 +103,188 @@ public interface DirectoryElementRepository extends JpaRepository<DirectoryEleme
 
     List<DirectoryElementEntity> findByNameAndParentIdAndType(String name, UUID parentId, String type);
 
-    //When using UNION, there is no guarantee order in which the rows are actually returned
-    //https://www.postgresql.org/docs/current/queries-union.html
-    @Query(nativeQuery = true, value =
-            "WITH RECURSIVE ElementHierarchy (element_id, parent_element_id, depth) AS ( " +
-                    "  SELECT id AS element_id, parent_id AS parent_element_id, 0 AS depth" +
-                    "  FROM element " +
-                    "  WHERE id = :elementId " +
-                    "  UNION ALL " +
-                    "  SELECT e.id AS element_id, e.parent_id AS parent_element_id, eh.depth + 1" +
-                    "  FROM element e " +
-                    "  INNER JOIN ElementHierarchy eh ON eh.parent_element_id = e.id " +
-                    ") " +
-                    "SELECT * FROM element e " +
-                    "WHERE e.id in (SELECT eh.element_id from ElementHierarchy eh) " +
-                    "ORDER BY (SELECT depth FROM ElementHierarchy WHERE element_id = e.id) DESC")
+    // Rewrites the materialized paths prefix of all the elements of a subtree (uses the path prefix index)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE DirectoryElementEntity e SET e.path = CONCAT(:newPath, SUBSTRING(e.path, :oldPathLength + 1)), " +
+            "e.namePath = CONCAT(:newNamePath, SUBSTRING(e.namePath, :oldNamePathLength + 1)) " +
+            "WHERE e.path LIKE :pathPrefix")
+    void updateSubtreePaths(String pathPrefix, int oldPathLength, String newPath, int oldNamePathLength, String newNamePath);
+
+    // Moves elements without descendants to a new parent directory, rebuilding their materialized paths
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE DirectoryElementEntity e SET e.parentId = :parentId, " +
+            "e.path = CONCAT(:pathPrefix, CAST(e.id AS String)), e.namePath = CONCAT(:namePathPrefix, e.name) " +
+            "WHERE e.id IN :elementIds")
+    void updateLeavesParent(Collection<UUID> elementIds, UUID parentId, String pathPrefix, String namePathPrefix);
+
+    // Name conflicts, using the (parentId, name, type) unique index
+    boolean existsByParentIdAndNameAndType(UUID parentId, String name, String type);
+
+    interface NamedElement {
+        String getName();
+
+        String getType();
+    }
+
+    // Candidates to name conflicts in a directory: the exact (name, type) pairs are checked by the caller
+    @Query("SELECT e.name AS name, e.type AS type FROM DirectoryElementEntity e " +
+            "WHERE e.parentId = :parentId AND e.name IN :names AND e.type IN :types")
+    List<NamedElement> findNamesAndTypes(UUID parentId, Collection<String> names, Collection<String> types);
+
+    // The ancestors of an element, the element included
+    @Query("SELECT c.ancestorId FROM ElementClosureEntity c WHERE c.descendantId = :elementId")
+    List<UUID> findAllAncestorsUuids(@Param("elementId") UUID elementId);
+
+    @Query("SELECT e FROM DirectoryElementEntity e JOIN ElementClosureEntity c ON c.ancestorId = e.id " +
+            "WHERE c.descendantId = :elementId ORDER BY c.depth DESC")
     List<DirectoryElementEntity> findElementHierarchy(@Param("elementId") UUID elementId);
 
-    @Query(nativeQuery = true, value =
-            "WITH RECURSIVE DescendantHierarchy (element_id, parent_element_id, depth) AS (" +
-                    "  SELECT id AS element_id, parent_id AS parent_element_id, 0 AS depth" +
-                    "  FROM element WHERE id = :elementId" +
-                    "  UNION ALL" +
-                    "  SELECT e.id AS element_id, e.parent_id AS parent_element_id, dh.depth + 1" +
-                    "  FROM element e" +
-                    "  INNER JOIN DescendantHierarchy dh ON dh.element_id = e.parent_id)" +
-                    "SELECT * FROM element e " +
-                    "WHERE e.id IN (SELECT dh.element_id FROM DescendantHierarchy dh) AND e.id != :elementId"
-    )
+    @Query("SELECT e FROM DirectoryElementEntity e JOIN ElementClosureEntity c ON c.descendantId = e.id " +
+            "WHERE c.ancestorId = :elementId AND c.depth > 0")
     List<DirectoryElementEntity> findAllDescendants(@Param("elementId") UUID elementId);
 
-    @Query(nativeQuery = true, value =
-        "WITH RECURSIVE DescendantHierarchy (element_id, parent_element_id, depth) AS (" +
-            "  SELECT id AS element_id, parent_id AS parent_element_id, 0 AS depth" +
-            "  FROM element WHERE id = :elementId" +
-            "  UNION ALL" +
-            "  SELECT e.id AS element_id, e.parent_id AS parent_element_id, dh.depth + 1" +
-            "  FROM element e" +
-            "  INNER JOIN DescendantHierarchy dh ON dh.element_id = e.parent_id)" +
-            "SELECT cast(dh.element_id AS VARCHAR) " +
-            "FROM DescendantHierarchy dh where dh.element_id != :elementId "
-    )
+    @Query("SELECT c.descendantId FROM ElementClosureEntity c WHERE c.ancestorId = :elementId AND c.depth > 0")
     List<UUID> findAllDescendantsUuids(@Param("elementId") UUID elementId);
 
-    interface ElementParentage {
+    interface DirectoryNode {
+        UUID getId();
+
+        UUID getParentId();
+
+        String getName();
+    }
+
+    @Query("SELECT d.id AS id, d.parentId AS parentId, d.name AS name FROM DirectoryElementEntity d WHERE d.type = 'DIRECTORY'")
+    List<DirectoryNode> findAllDirectoryNodes();
+
+    @Query("SELECT d.id AS id, d.parentId AS parentId, d.name AS name FROM DirectoryElementEntity d " +
+            "WHERE d.type = 'DIRECTORY' AND (d.id IN :directoryUuids OR d.parentId IN :directoryUuids)")
+    List<DirectoryNode> findDirectoryNodesAndChildren(Collection<UUID> directoryUuids);
+
+    // The attributes of an element written in its document, read without the references
+    interface IndexedElement {
         UUID getId();
 
         UUID getParentId();
+
+        String getName();
+
+        String getType();
+
+        String getOwner();
+
+        Instant getLastModificationDate();
+
+        String getPath();
+
+        String getNamePath();
+
+        default DirectoryElementInfos toDirectoryElementInfos() {
+            return DirectoryElementInfos.builder()
+                    .id(getId())
+                    .name(getName())
+                    .owner(getOwner())
+                    .parentId(getParentId() == null ? getId() : getParentId())
+                    .type(getType())
+                    .pathUuid(DirectoryElementEntity.getAncestorsUuids(getPath()))
+                    .pathName(DirectoryElementEntity.getAncestorsNames(getNamePath()))
+                    .lastModificationDate(getLastModificationDate())
+                    .build();
+        }
+    }
+
+    // Keyset pagination by id: the first page, then the page following the last read id
+    @Query("SELECT e.id AS id, e.parentId AS parentId, e.name AS name, e.type AS type, e.owner AS owner, " +
+            "e.lastModificationDate AS lastModificationDate, e.path AS path, e.namePath AS namePath " +
+            "FROM DirectoryElementEntity e ORDER BY e.id")
+    List<IndexedElement> findIndexedElements(Pageable pageable);
+
+    @Query("SELECT e.id AS id, e.parentId AS parentId, e.name AS name, e.type AS type, e.owner AS owner, " +
+            "e.lastModificationDate AS lastModificationDate, e.path AS path, e.namePath AS namePath " +
+            "FROM DirectoryElementEntity e WHERE e.id > :lastId ORDER BY e.id")
+    List<IndexedElement> findIndexedElementsAfter(UUID lastId, Pageable pageable);
+
+    // Same pagination, restricted to the elements modified since a date
+    @Query("SELECT e.id AS id, e.parentId AS parentId, e.name AS name, e.type AS type, e.owner AS owner, " +
+            "e.lastModificationDate AS lastModificationDate, e.path AS path, e.namePath AS namePath " +
+            "FROM DirectoryElementEntity e WHERE e.lastModificationDate >= :since ORDER BY e.id")
+    List<IndexedElement> findIndexedElementsModifiedSince(Instant since, Pageable pageable);
+
+    @Query("SELECT e.id AS id, e.parentId AS parentId, e.name AS name, e.type AS type, e.owner AS owner, " +
+            "e.lastModificationDate AS lastModificationDate, e.path AS path, e.namePath AS namePath " +
+            "FROM DirectoryElementEntity e WHERE e.lastModificationDate >= :since AND e.id > :lastId ORDER BY e.id")
+    List<IndexedElement> findIndexedElementsModifiedSinceAfter(Instant since, UUID lastId, Pageable pageable);
+
+    @Query("SELECT e.id AS id, e.parentId AS parentId, e.name AS name, e.type AS type, e.owner AS owner, " +
+            "e.lastModificationDate AS lastModificationDate, e.path AS path, e.namePath AS namePath " +
+            "FROM DirectoryElementEntity e WHERE e.id IN :ids")
+    List<IndexedElement> findIndexedElementsByIdIn(Collection<UUID> ids);
+
+    String CHILDREN_TYPES_FILTER = "AND (e.type = 'DIRECTORY' OR :allTypes = true OR e.type IN :types) ";
+
+    // The readable children of several readable directories with their references, the directories being always included:
+    // a non directory child is readable with its parent, a directory child needs its own read permission
+    @EntityGraph(attributePaths = {"references"}, type = EntityGraph.EntityGraphType.LOAD)
+    @Query("SELECT e FROM DirectoryElementEntity e WHERE e.parentId IN :parentIds " + CHILDREN_TYPES_FILTER +
+            "AND (:bypassPermissions = true OR e.type <> 'DIRECTORY' OR EXISTS (SELECT p FROM PermissionEntity p WHERE p.elementId = e.id AND p.read = true " +
+            "  AND ((p.userGroupId = '' AND p.userId IN :userIds) OR (p.userId = '' AND p.userGroupId IN :userGroupIds))))")
+    List<DirectoryElementEntity> findReadableChildrenWithReferences(Collection<UUID> parentIds, boolean allTypes, List<String> types,
+                                                                    boolean bypassPermissions, List<String> userIds, List<String> userGroupIds);
+
+    // Whether some directory in the subtrees of the given elements misses the write permission, checked by a single query
+    @Query("SELECT COUNT(d) > 0 FROM DirectoryElementEntity d JOIN ElementClosureEntity c ON c.descendantId = d.id " +
+            "WHERE c.ancestorId IN :elementIds AND c.depth > 0 AND d.type = 'DIRECTORY' " +
+            "AND NOT EXISTS (SELECT p FROM PermissionEntity p WHERE p.elementId = d.id AND p.write = true " +
+            "  AND ((p.userGroupId = '' AND p.userId IN :userIds) OR (p.userId = '' AND p.userGroupId IN :userGroupIds)))")
+    boolean existsDescendantDirectoryWithoutWritePermission(Collection<UUID> elementIds, List<String> userIds, List<String> userGroupIds);
+
+    // Keyset pagination of the children of a directory by name, the directories being always included:
+    // the first page, then the page following the last read element (uses the (parentId, name, id) index)
+    @Query("SELECT e FROM DirectoryElementEntity e WHERE e.parentId = :parentId " + CHILDREN_TYPES_FILTER +
+            "ORDER BY e.name, e.id")
+    List<DirectoryElementEntity> findChildrenOrderByName(UUID parentId, boolean allTypes, List<String> types, Pageable pageable);
+
+    @Query("SELECT e FROM DirectoryElementEntity e WHERE e.parentId = :parentId " + CHILDREN_TYPES_FILTER +
+            "AND (e.name > :lastName OR (e.name = :lastName AND e.id > :lastId)) ORDER BY e.name, e.id")
+    List<DirectoryElementEntity> findChildrenOrderByNameAfter(UUID parentId, boolean allTypes, List<String> types,
+                                                              String lastName, UUID lastId, Pageable pageable);
+
+    // Same by last modification date, the most recent first, the elements without date before all the others, on every
+    // database (uses the (parentId, lastModificationDate, id) index backward)
+    @Query("SELECT e FROM DirectoryElementEntity e WHERE e.parentId = :parentId " + CHILDREN_TYPES_FILTER +
+            "ORDER BY e.lastModificationDate DESC NULLS FIRST, e.id DESC")
+    List<DirectoryElementEntity> findChildrenOrderByLastModificationDate(UUID parentId, boolean allTypes, List<String> types, Pageable pageable);
+
+    @Query("SELECT e FROM DirectoryElementEntity e WHERE e.parentId = :parentId " + CHILDREN_TYPES_FILTER +
+            "AND (e.lastModificationDate < :lastModificationDate OR (e.lastModificationDate = :lastModificationDate AND e.id < :lastId)) " +
+            "ORDER BY e.lastModificationDate DESC NULLS FIRST, e.id DESC")
+    List<DirectoryElementEntity> findChildrenOrderByLastModificationDateAfter(UUID parentId, boolean allTypes, List<String> types,
+                                                                              Instant lastModificationDate, UUID lastId, Pageable pageable);
+
+    // After an element without date: the following ones without date, then all the ones with a date
+    @Query("SELECT e FROM DirectoryElementEntity e WHERE e.parentId = :parentId " + CHILDREN_TYPES_FILTER +
+            "AND (e.lastModificationDate IS NOT NULL OR e.id < :lastId) " +
+            "ORDER BY e.lastModificationDate DESC NULLS FIRST, e.id DESC")
+    List<DirectoryElementEntity> findChildrenOrderByLastModificationDateAfterNoDate(UUID parentId, boolean allTypes, List<String> types,
+                                                                                    UUID lastId, Pageable pageable);
+
+    interface ChildrenCount {
+        UUID getParentId();
+
+        Long getCount();
     }
 
-    @Query("SELECT d.id AS id, d.parentId AS parentId FROM DirectoryElementEntity d WHERE d.parentId IN :parentIds AND (d.type = 'DIRECTORY' OR d.type IN :elementTypes)")
-    List<ElementParentage> findAllByParentIdsAndElementTypes(List<UUID> parentIds, List<String> elementTypes);
+    // A non directory child is readable as soon as its parent is, a directory child needs its own read permission
+    @Query("SELECT d.parentId AS parentId, COUNT(d) AS count FROM DirectoryElementEntity d " +
+            "WHERE d.parentId IN :parentIds AND (d.type = 'DIRECTORY' OR d.type IN :elementTypes) " +
+            "AND (:bypassPermissions = true OR (" +
+            "  EXISTS (SELECT p FROM PermissionEntity p WHERE p.elementId = d.parentId AND p.read = true " +
+            "    AND ((p.userGroupId = '' AND p.userId IN :userIds) OR (p.userId = '' AND p.userGroupId IN :userGroupIds))) " +
+            "  AND (d.type <> 'DIRECTORY' OR EXISTS (SELECT p FROM PermissionEntity p WHERE p.elementId = d.id AND p.read = true " +
+            "    AND ((p.userGroupId = '' AND p.userId IN :userIds) OR (p.userId = '' AND p.userGroupId IN :userGroupIds)))))) " +
+            "GROUP BY d.parentId")
+    List<ChildrenCount> countReadableChildrenByParentIds(List<UUID> parentIds, List<String> elementTypes, boolean bypassPermissions,
+                                                         List<String> userIds, List<String> userGroupIds);
 }
@@ -0,0 +1,26 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author agent <agent at local>
+ */
+public interface DirectoryElementRepositoryCustom {
+
+    record ElementModification(UUID elementUuid, Instant modificationDate, String modifiedBy) { }
+
+    /**
+     * Applies the modifications with a single batched statement, an element already modified at a later date is left unchanged
+     *
+     * @return the modifications actually applied
+     */
+    List<ElementModification> updateLastModifiedAttributes(List<ElementModification> modifications);
+}
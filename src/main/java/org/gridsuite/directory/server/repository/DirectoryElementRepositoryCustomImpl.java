@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * @author agent <agent at local>
+ */
+public class DirectoryElementRepositoryCustomImpl implements DirectoryElementRepositoryCustom {
+
+    private static final String UPDATE_LAST_MODIFIED_ATTRIBUTES = "UPDATE element SET last_modification_date = ?, last_modified_by = ? " +
+            "WHERE id = ? AND (last_modification_date IS NULL OR last_modification_date < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DirectoryElementRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<ElementModification> updateLastModifiedAttributes(List<ElementModification> modifications) {
+        if (modifications.isEmpty()) {
+            return List.of();
+        }
+        int[] updateCounts = jdbcTemplate.batchUpdate(UPDATE_LAST_MODIFIED_ATTRIBUTES, modifications, modifications.size(), (ps, modification) -> {
+            OffsetDateTime modificationDate = OffsetDateTime.ofInstant(modification.modificationDate(), ZoneOffset.UTC);
+            ps.setObject(1, modificationDate);
+            ps.setString(2, modification.modifiedBy());
+            ps.setObject(3, modification.elementUuid());
+            ps.setObject(4, modificationDate);
+        })[0];
+        return IntStream.range(0, modifications.size())
+            .filter(i -> updateCounts[i] != 0)
+            .mapToObj(modifications::get)
+            .toList();
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Transitive closure of the element tree: one row for each (ancestor, descendant) pair, including the
+ * element itself at depth 0. Rows are removed by the database (on delete cascade) with their elements.
+ *
+ * @author agent <agent at local>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "element_closure", indexes = {@Index(name = "elementClosure_descendantId_depth_index", columnList = "descendantId, depth")})
+@IdClass(ElementClosureId.class)
+@EqualsAndHashCode
+public class ElementClosureEntity {
+
+    @Id
+    @Column(name = "ancestorId")
+    private UUID ancestorId;
+
+    @Id
+    @Column(name = "descendantId")
+    private UUID descendantId;
+
+    @Column(name = "depth", nullable = false)
+    private int depth;
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * @author agent <agent at local>
+ */
+@Repository
+public interface ElementClosureRepository extends JpaRepository<ElementClosureEntity, ElementClosureId> {
+
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = "INSERT INTO element_closure (ancestor_id, descendant_id, depth) VALUES (:elementId, :elementId, 0)")
+    void insertSelf(@Param("elementId") UUID elementId);
+
+    // All the ancestors of the parent, the parent included, become ancestors of the element one level deeper
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value =
+            "INSERT INTO element_closure (ancestor_id, descendant_id, depth) " +
+            "SELECT c.ancestor_id, :elementId, c.depth + 1 FROM element_closure c WHERE c.descendant_id = :parentId")
+    void insertAncestors(@Param("elementId") UUID elementId, @Param("parentId") UUID parentId);
+
+    // Unlink the subtree from its former ancestors: only the rows inside the subtree are kept
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value =
+            "DELETE FROM element_closure " +
+            "WHERE descendant_id IN (SELECT s.descendant_id FROM element_closure s WHERE s.ancestor_id = :elementId) " +
+            "AND ancestor_id NOT IN (SELECT s.descendant_id FROM element_closure s WHERE s.ancestor_id = :elementId)")
+    void detachSubtree(@Param("elementId") UUID elementId);
+
+    // Link every node of the subtree to every ancestor of its new parent (the parent included)
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value =
+            "INSERT INTO element_closure (ancestor_id, descendant_id, depth) " +
+            "SELECT a.ancestor_id, s.descendant_id, a.depth + s.depth + 1 " +
+            "FROM element_closure a CROSS JOIN element_closure s " +
+            "WHERE a.descendant_id = :parentId AND s.ancestor_id = :elementId")
+    void attachSubtree(@Param("elementId") UUID elementId, @Param("parentId") UUID parentId);
+
+    // Unlink several elements without descendants from their former ancestors: only their self rows are kept
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = "DELETE FROM element_closure WHERE descendant_id IN (:elementIds) AND depth > 0")
+    void detachLeaves(@Param("elementIds") Collection<UUID> elementIds);
+
+    // Link several elements without descendants to every ancestor of their new parent (the parent included)
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value =
+            "INSERT INTO element_closure (ancestor_id, descendant_id, depth) " +
+            "SELECT a.ancestor_id, s.descendant_id, a.depth + 1 " +
+            "FROM element_closure a CROSS JOIN element_closure s " +
+            "WHERE a.descendant_id = :parentId AND s.descendant_id IN (:elementIds) AND s.depth = 0")
+    void attachLeaves(@Param("elementIds") Collection<UUID> elementIds, @Param("parentId") UUID parentId);
+
+    // Number of levels below an element, 0 for an element without descendants
+    @Query("SELECT COALESCE(MAX(c.depth), 0) FROM ElementClosureEntity c WHERE c.ancestorId = :elementId")
+    int findSubtreeHeight(@Param("elementId") UUID elementId);
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Write operation on the document of an element waiting to be sent to Elasticsearch: the row is written in the
+ * transaction of the change it indexes and removed by the indexer once the operation has been applied to the live
+ * index and, during a reindexation, to the index being built. The document and the fields are serialized in JSON.
+ *
+ * @author agent <agent at local>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+@Entity
+@Table(name = "element_indexing_outbox")
+public class ElementIndexingOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "creationDate", columnDefinition = "timestamptz", nullable = false)
+    private Instant creationDate;
+
+    @Column(name = "operationType", length = 20, nullable = false)
+    private String operationType;
+
+    @Column(name = "elementUuid", nullable = false)
+    private UUID elementUuid;
+
+    @Column(name = "document", columnDefinition = "CLOB")
+    private String document;
+
+    @Column(name = "fields", columnDefinition = "CLOB")
+    private String fields;
+
+    // applied to the live index, only the index being built is still to be sent
+    @Builder.Default
+    @Column(name = "liveApplied", nullable = false)
+    private boolean liveApplied = false;
+
+    @Builder.Default
+    @Column(name = "attempts", nullable = false)
+    private int attempts = 0;
+
+    @Column(name = "nextAttemptDate", columnDefinition = "timestamptz")
+    private Instant nextAttemptDate;
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @author agent <agent at local>
+ */
+@Repository
+public interface ElementIndexingOutboxRepository extends JpaRepository<ElementIndexingOutboxEntity, Long> {
+
+    // The oldest operations are locked without skipping the rows locked by another indexer: the indexers flush one
+    // after the other and the operations are applied in the order of their creation
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM ElementIndexingOutboxEntity o ORDER BY o.id")
+    List<ElementIndexingOutboxEntity> findOldestForUpdate(Pageable pageable);
+
+    @Query("SELECT MIN(o.creationDate) FROM ElementIndexingOutboxEntity o")
+    Optional<Instant> findOldestCreationDate();
+
+    @Modifying
+    @Query("DELETE FROM ElementIndexingOutboxEntity o WHERE o.id IN :ids")
+    void deleteAllByIdIn(Collection<Long> ids);
+}
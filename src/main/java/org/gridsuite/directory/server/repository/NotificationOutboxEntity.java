@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Directory update message waiting to be published: the row is written in the transaction of the change it
+ * notifies and removed by the relay once the message has been sent. The headers are stored as they are sent,
+ * the lists being serialized in JSON.
+ *
+ * @author agent <agent at local>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+@Entity
+@Table(name = "notification_outbox")
+public class NotificationOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "creationDate", columnDefinition = "timestamptz", nullable = false)
+    private Instant creationDate;
+
+    @Column(name = "updateType", length = 80, nullable = false)
+    private String updateType;
+
+    @Column(name = "notificationType", length = 80)
+    private String notificationType;
+
+    @Column(name = "userId")
+    private String userId;
+
+    @Column(name = "directoriesInfos", columnDefinition = "CLOB")
+    private String directoriesInfos;
+
+    @Column(name = "elementNames", columnDefinition = "CLOB")
+    private String elementNames;
+
+    @Column(name = "isDirectoryMoving")
+    private Boolean isDirectoryMoving;
+
+    @Column(name = "error", columnDefinition = "CLOB")
+    private String error;
+
+    @Column(name = "elementUuid")
+    private UUID elementUuid;
+
+    @Column(name = "exportUuid")
+    private UUID exportUuid;
+
+    @Column(name = "payload", columnDefinition = "CLOB")
+    private String payload;
+
+    @Builder.Default
+    @Column(name = "attempts", nullable = false)
+    private int attempts = 0;
+
+    @Column(name = "nextAttemptDate", columnDefinition = "timestamptz")
+    private Instant nextAttemptDate;
+}
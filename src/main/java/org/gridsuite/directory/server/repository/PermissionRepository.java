@@ -8,8 +8,12 @@ package org.gridsuite.directory.server.repository;
 
 import lombok.NonNull;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -25,7 +29,16 @@ public interface PermissionRepository extends JpaRepository<PermissionEntity, Pe
 
     void deleteAllByElementId(UUID elementId);
 
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PermissionEntity p WHERE p.elementId IN :elementIds")
+    void deleteAllByElementIdIn(Collection<UUID> elementIds);
+
     List<PermissionEntity> findAllByElementId(UUID elementId);
 
     void deleteAllByElementIdAndUserIdNot(UUID elementId, String userId);
+
+    @Query("SELECT p FROM PermissionEntity p WHERE p.elementId IN :elementIds " +
+        "AND ((p.userGroupId = '' AND p.userId IN :userIds) OR (p.userId = '' AND p.userGroupId IN :userGroupIds))")
+    List<PermissionEntity> findAllByElementIdInAndPrincipals(Collection<UUID> elementIds, Collection<String> userIds, Collection<String> userGroupIds);
 }
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Reindexation of the directory elements, the elements being indexed by id order: the checkpoint is the id of the
+ * last element whose document has been written, along with all the previous ones.
+ *
+ * @author agent <agent at local>
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+@Entity
+@Table(name = "reindex_job")
+public class ReindexJobEntity {
+
+    public enum Type {
+        // the documents are written in the live index
+        REINDEX,
+        // the documents are written in a new index replacing the live one once complete
+        REBUILD
+    }
+
+    public enum Status {
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    @Id
+    @Column(name = "id")
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", length = 80, nullable = false)
+    private Type type;
+
+    @Column(name = "indexName", nullable = false)
+    private String indexName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 80, nullable = false)
+    private Status status;
+
+    // number of elements when the job started
+    @Column(name = "totalCount", nullable = false)
+    private long totalCount;
+
+    @Column(name = "indexedCount", nullable = false)
+    private long indexedCount;
+
+    @Column(name = "lastElementId")
+    private UUID lastElementId;
+
+    // start of the current run and number of elements indexed before it, the job being resumed after a failure
+    @Column(name = "runStartDate", columnDefinition = "timestamptz", nullable = false)
+    private Instant runStartDate;
+
+    @Column(name = "runStartCount", nullable = false)
+    private long runStartCount;
+
+    @Column(name = "creationDate", columnDefinition = "timestamptz", nullable = false)
+    private Instant creationDate;
+
+    // date of the last checkpoint
+    @Column(name = "updateDate", columnDefinition = "timestamptz", nullable = false)
+    private Instant updateDate;
+
+    @Column(name = "endDate", columnDefinition = "timestamptz")
+    private Instant endDate;
+
+    @Column(name = "error", columnDefinition = "CLOB")
+    private String error;
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * @author agent <agent at local>
+ */
+@Repository
+public interface ReindexJobRepository extends JpaRepository<ReindexJobEntity, UUID> {
+
+    boolean existsByStatusAndUpdateDateAfter(ReindexJobEntity.Status status, Instant updateDate);
+
+    Optional<ReindexJobEntity> findFirstByTypeAndStatusAndUpdateDateAfter(ReindexJobEntity.Type type, ReindexJobEntity.Status status, Instant updateDate);
+}
@@ -11,8 +11,13 @@ package org.gridsuite.directory.server.services;
  * @author Kevin Le Saulnier <kevin.lesaulnier at rte-france.com>
  */
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.gridsuite.directory.server.DirectoryService;
 import org.gridsuite.directory.server.NotificationService;
+import org.gridsuite.directory.server.dto.DirectoryInfos;
+import org.gridsuite.directory.server.repository.DirectoryElementRepositoryCustom.ElementModification;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +26,9 @@ import org.springframework.messaging.Message;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.function.Consumer;
 
@@ -39,28 +47,52 @@ public class ConsumerService {
     public static final String HEADER_STUDY_UUID = "studyUuid";
     public static final String HEADER_MODIFIED_BY = "modifiedBy";
     public static final String HEADER_MODIFICATION_DATE = "modificationDate";
+    // headers of the messages of a batch, set by the rabbit binder
+    public static final String HEADER_BATCHED_HEADERS = "amqp_batchedHeaders";
 
     DirectoryService directoryService;
     private final NotificationService notificationService;
+    private final UserAdminService userAdminService;
+    private final DirectoryTreeIndex directoryTreeIndex;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public ConsumerService(DirectoryService directoryService, NotificationService notificationService) {
+    public ConsumerService(DirectoryService directoryService, NotificationService notificationService, UserAdminService userAdminService,
+                           DirectoryTreeIndex directoryTreeIndex, ObjectMapper objectMapper) {
         this.directoryService = directoryService;
         this.notificationService = notificationService;
+        this.userAdminService = userAdminService;
+        this.directoryTreeIndex = directoryTreeIndex;
+        this.objectMapper = objectMapper;
     }
 
-    @Bean
-    public Consumer<Message<String>> consumeElementUpdate() {
-        return message -> {
-            String elementUpdatedUuidStr = message.getHeaders().get(HEADER_ELEMENT_UUID, String.class);
-            String modifiedBy = message.getHeaders().get(HEADER_MODIFIED_BY, String.class);
-            String modificationDateStr = message.getHeaders().get(HEADER_MODIFICATION_DATE, String.class);
-
-            UUID elementUpdatedUuid = UUID.fromString(elementUpdatedUuidStr);
-            Instant modificationDate = Instant.parse(modificationDateStr);
+    /**
+     * The element updates are consumed by batches (one message without batching): the modifications are collapsed
+     * per element, keeping the latest one, and applied at once
+     */
+    public void consumeElementUpdate(Message<?> message) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> batchedHeaders = message.getHeaders().get(HEADER_BATCHED_HEADERS, List.class);
+        List<Map<String, Object>> messagesHeaders = batchedHeaders != null ? batchedHeaders : List.<Map<String, Object>>of(message.getHeaders());
+
+        Map<UUID, ElementModification> modificationsByElement = new LinkedHashMap<>();
+        for (Map<String, Object> headers : messagesHeaders) {
+            try {
+                UUID elementUpdatedUuid = UUID.fromString(headers.get(HEADER_ELEMENT_UUID).toString());
+                Instant modificationDate = Instant.parse(headers.get(HEADER_MODIFICATION_DATE).toString());
+                String modifiedBy = (String) headers.get(HEADER_MODIFIED_BY);
+                modificationsByElement.merge(elementUpdatedUuid, new ElementModification(elementUpdatedUuid, modificationDate, modifiedBy),
+                    (m1, m2) -> m2.modificationDate().isAfter(m1.modificationDate()) ? m2 : m1);
+            } catch (Exception e) {
+                LOGGER.error("Invalid element update message {}", headers, e);
+            }
+        }
+        directoryService.updateElementsLastModifiedAttributes(List.copyOf(modificationsByElement.values()));
+    }
 
-            directoryService.updateElementLastModifiedAttributes(elementUpdatedUuid, modificationDate, modifiedBy);
-        };
+    @Bean
+    public Consumer<Message<?>> consumeElementUpdate() {
+        return this::consumeElementUpdate;
     }
 
     //TODO: this consumer is the kept here at the moment, but it will be moved to explore server later on
@@ -94,4 +126,50 @@ public class ConsumerService {
     public Consumer<Message<String>> consumeCaseExportFinished() {
         return this::consumeCaseExportFinished;
     }
+
+    public void consumeUserGroupsUpdate(Message<String> msg) {
+        // without user, the groups themselves have changed: all the cached memberships may be stale
+        String userId = msg.getHeaders().get(HEADER_USER_ID, String.class);
+        if (userId != null) {
+            userAdminService.invalidateUserGroups(userId);
+        } else {
+            userAdminService.invalidateAllUserGroups();
+        }
+    }
+
+    @Bean
+    public Consumer<Message<String>> consumeUserGroupsUpdate() {
+        return this::consumeUserGroupsUpdate;
+    }
+
+    public void consumeDirectoryUpdate(Message<String> msg) {
+        // the directories tree index is refreshed from the database, the messages published by this instance are harmless
+        Object updateType = msg.getHeaders().get(HEADER_UPDATE_TYPE);
+        String directoriesInfos = msg.getHeaders().get(HEADER_DIRECTORIES_INFOS, String.class);
+        try {
+            if (UPDATE_TYPE_ELEMENT_DELETE.equals(updateType)) {
+                Object elementUuidHeader = msg.getHeaders().get(HEADER_ELEMENT_UUID);
+                if (elementUuidHeader != null) {
+                    refreshDeletedDirectories(List.of(UUID.fromString(elementUuidHeader.toString())));
+                }
+            } else if (UPDATE_TYPE_ELEMENTS_DELETE.equals(updateType)) {
+                refreshDeletedDirectories(objectMapper.readValue(msg.getPayload(), new TypeReference<List<UUID>>() { }));
+            } else if (directoriesInfos != null) {
+                List<DirectoryInfos> infos = objectMapper.readValue(directoriesInfos, new TypeReference<>() { });
+                directoryTreeIndex.refresh(infos.stream().map(DirectoryInfos::uuid).distinct().toList());
+            }
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Unable to read the updated directories, rebuilding the directories tree index", e);
+            directoryTreeIndex.rebuild();
+        }
+    }
+
+    private void refreshDeletedDirectories(List<UUID> elementUuids) {
+        directoryTreeIndex.refresh(elementUuids.stream().filter(directoryTreeIndex::isDirectory).toList());
+    }
+
+    @Bean
+    public Consumer<Message<String>> consumeDirectoryUpdate() {
+        return this::consumeDirectoryUpdate;
+    }
 }
@@ -0,0 +1,395 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.SneakyThrows;
+import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
+import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.elasticsearch.ElementInfosOperation;
+import org.gridsuite.directory.server.error.DirectoryException;
+import org.gridsuite.directory.server.repository.DirectoryElementEntity;
+import org.gridsuite.directory.server.repository.ElementIndexingOutboxEntity;
+import org.gridsuite.directory.server.repository.ElementIndexingOutboxRepository;
+import org.gridsuite.directory.server.repository.ReindexJobEntity;
+import org.gridsuite.directory.server.repository.ReindexJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepositoryCustom.LAST_MODIFICATION_DATE_FIELD;
+import static org.gridsuite.directory.server.error.DirectoryBusinessErrorCode.DIRECTORY_INDEXING_BACKLOG_FULL;
+
+/**
+ * Indexing pipeline of the directory elements: the write operations on the documents are stored in an outbox table,
+ * in the transaction that produced them if any, and a background worker sends them to Elasticsearch by bulk requests,
+ * when enough operations are waiting or after the flush interval. The operations waiting are not lost when the
+ * application stops or crashes, they are sent by the next flush of any instance.
+ * The operations are applied in the order of their creation. When a bulk request fails it is retried with an
+ * exponential backoff, the following operations waiting for it, until it succeeds. While the outbox holds more than
+ * the maximum backlog, Elasticsearch being unavailable for too long, the changes producing new operations are refused.
+ * While a REBUILD job runs, on any instance, the operations are also sent to the index it fills: the job is read from
+ * the database, at most once per shadow refresh interval. The live index and the index being built are retried
+ * separately, the operations applied to the live index are not sent to it again.
+ *
+ * @author agent <agent at local>
+ */
+@Service
+public class DirectoryElementInfosIndexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryElementInfosIndexer.class);
+
+    private static final String METRICS_PREFIX = "directory.elasticsearch.indexing.";
+
+    private final DirectoryElementInfosRepository directoryElementInfosRepository;
+
+    private final ElementIndexingOutboxRepository elementIndexingOutboxRepository;
+
+    private final ReindexJobRepository reindexJobRepository;
+
+    private final ObjectMapper mapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // number of operations in the outbox, counted on each flush and increased by the new operations meanwhile
+    private final AtomicLong backlog = new AtomicLong();
+
+    private final AtomicBoolean flushPending = new AtomicBoolean(false);
+
+    // index being built by a reindexation, receiving the operations too until it replaces the live index
+    private volatile String shadowIndexName;
+
+    private volatile Instant shadowIndexCheckDate = Instant.MIN;
+
+    private ScheduledExecutorService scheduledExecutorService;
+
+    private final Timer flushTimer;
+
+    private final Counter appliedCounter;
+
+    private final Counter failedCounter;
+
+    private final Counter rejectedCounter;
+
+    // flush in the thread committing the operations, the changes being visible to the searches once it returns (used by the tests)
+    private final boolean synchronous;
+
+    private final int batchSize;
+
+    // maximum delay before sending the waiting operations, in ms
+    private final long flushInterval;
+
+    // number of waiting operations above which the new ones are refused
+    private final long maxBacklog;
+
+    // delay before the first retry, in ms, doubled on each attempt
+    private final long initialBackoff;
+
+    private final long maxBackoff;
+
+    // maximum delay before the operations are sent to the index of a starting REBUILD job, in ms
+    private final long shadowRefreshInterval;
+
+    // same as the reindexer, a running job without checkpoint for this delay is not filling its index anymore, in ms
+    private final long reindexStaleTimeout;
+
+    public DirectoryElementInfosIndexer(DirectoryElementInfosRepository directoryElementInfosRepository,
+                                        ElementIndexingOutboxRepository elementIndexingOutboxRepository,
+                                        ReindexJobRepository reindexJobRepository,
+                                        ObjectMapper mapper,
+                                        PlatformTransactionManager transactionManager,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${directory.elasticsearch.indexing.synchronous:false}") boolean synchronous,
+                                        @Value("${directory.elasticsearch.indexing.batch-size:500}") int batchSize,
+                                        @Value("${directory.elasticsearch.indexing.flush-interval:1000}") long flushInterval,
+                                        @Value("${directory.elasticsearch.indexing.max-backlog:100000}") long maxBacklog,
+                                        @Value("${directory.elasticsearch.indexing.retry.initial-backoff:1000}") long initialBackoff,
+                                        @Value("${directory.elasticsearch.indexing.retry.max-backoff:60000}") long maxBackoff,
+                                        @Value("${directory.elasticsearch.indexing.shadow-refresh-interval:1000}") long shadowRefreshInterval,
+                                        @Value("${directory.elasticsearch.reindex.stale-timeout:300000}") long reindexStaleTimeout) {
+        this.directoryElementInfosRepository = directoryElementInfosRepository;
+        this.elementIndexingOutboxRepository = elementIndexingOutboxRepository;
+        this.reindexJobRepository = reindexJobRepository;
+        this.mapper = mapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // the indexer may be flushed after the commit of a transaction whose resources are still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.synchronous = synchronous;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.maxBacklog = maxBacklog;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.shadowRefreshInterval = shadowRefreshInterval;
+        this.reindexStaleTimeout = reindexStaleTimeout;
+
+        flushTimer = Timer.builder(METRICS_PREFIX + "flush").description("Duration of the bulk requests sending the waiting operations").register(meterRegistry);
+        appliedCounter = Counter.builder(METRICS_PREFIX + "applied").description("Number of operations applied to the directory elements index").register(meterRegistry);
+        failedCounter = Counter.builder(METRICS_PREFIX + "failed").description("Number of failed bulk requests").register(meterRegistry);
+        rejectedCounter = Counter.builder(METRICS_PREFIX + "rejected").description("Number of operations refused because of the maximum backlog").register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + "backlog", backlog, AtomicLong::get)
+            .description("Number of operations waiting to be sent to the directory elements index")
+            .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + "lag", this, DirectoryElementInfosIndexer::getLag)
+            .description("Age in seconds of the oldest operation waiting to be sent to the directory elements index")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    private void postConstruct() {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        if (!synchronous) {
+            // also sends the operations left by a previous run or by another instance
+            scheduledExecutorService.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        if (scheduledExecutorService != null) {
+            // the waiting operations stay in the outbox
+            scheduledExecutorService.shutdown();
+        }
+    }
+
+    public void index(DirectoryElementEntity elementEntity) {
+        index(List.of(elementEntity));
+    }
+
+    public void index(List<DirectoryElementEntity> elementEntities) {
+        // the documents are built now, from the state of the entities written by the transaction
+        enqueue(elementEntities.stream().map(elementEntity -> ElementInfosOperation.index(elementEntity.toDirectoryElementInfos())).toList());
+    }
+
+    /**
+     * @param fieldsByElement the new values of the updated fields, by element
+     */
+    public void updateFields(Map<UUID, Map<String, Object>> fieldsByElement) {
+        enqueue(fieldsByElement.entrySet().stream().map(entry -> ElementInfosOperation.update(entry.getKey(), entry.getValue())).toList());
+    }
+
+    public void delete(Collection<UUID> elementUuids) {
+        enqueue(elementUuids.stream().map(ElementInfosOperation::delete).toList());
+    }
+
+    public void deleteSubtree(UUID elementUuid) {
+        enqueue(List.of(ElementInfosOperation.deleteSubtree(elementUuid)));
+    }
+
+    /**
+     * Rewrites the paths of the descendants of a moved or renamed element, its own document being indexed separately
+     */
+    public void moveSubtree(UUID elementUuid, String elementName, List<UUID> oldAncestorsUuids, List<UUID> newAncestorsUuids, List<String> newAncestorsNames) {
+        enqueue(List.of(ElementInfosOperation.moveSubtree(elementUuid, elementName, oldAncestorsUuids, newAncestorsUuids, newAncestorsNames)));
+    }
+
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    private void enqueue(List<ElementInfosOperation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        if (backlog.get() + operations.size() > maxBacklog) {
+            rejectedCounter.increment(operations.size());
+            throw DirectoryException.of(DIRECTORY_INDEXING_BACKLOG_FULL, "%d operations are waiting to be sent to the directory elements index", backlog.get());
+        }
+        Instant now = Instant.now();
+        elementIndexingOutboxRepository.saveAll(operations.stream().map(operation -> toOutboxEntity(operation, now)).toList());
+        backlog.addAndGet(operations.size());
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            wakeUp();
+        } else if (!TransactionSynchronizationManager.hasResource(this)) {
+            // a single wake up for all the operations of the transaction, forgotten with them on rollback
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DirectoryElementInfosIndexer.this);
+                }
+            });
+        }
+    }
+
+    private void wakeUp() {
+        if (synchronous) {
+            flush();
+        } else if (backlog.get() >= batchSize && flushPending.compareAndSet(false, true)) {
+            scheduledExecutorService.execute(() -> {
+                flushPending.set(false);
+                flush();
+            });
+        }
+    }
+
+    private void wakeUpLater(Duration delay) {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.schedule(this::flush, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the waiting operations batch after batch, until the outbox is empty or a batch has to be retried later
+     */
+    public synchronized void flush() {
+        try {
+            backlog.set(elementIndexingOutboxRepository.count());
+            Boolean complete;
+            do {
+                complete = transactionTemplate.execute(status -> flushBatch());
+            } while (Boolean.TRUE.equals(complete));
+        } catch (Exception e) {
+            LOGGER.error("Unable to flush the directory elements indexing outbox", e);
+        }
+    }
+
+    /**
+     * @return true if the batch has been applied and is complete, meaning more operations may be waiting
+     */
+    private boolean flushBatch() {
+        List<ElementIndexingOutboxEntity> batch = elementIndexingOutboxRepository.findOldestForUpdate(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return false;
+        }
+        Instant now = Instant.now();
+        ElementIndexingOutboxEntity first = batch.get(0);
+        if (first.getNextAttemptDate() != null && first.getNextAttemptDate().isAfter(now)) {
+            // retried later, the following operations waiting for it
+            return false;
+        }
+        String shadowIndex = getShadowIndexName();
+        if (!Boolean.TRUE.equals(flushTimer.record(() -> send(batch, shadowIndex)))) {
+            failedCounter.increment();
+            first.setAttempts(first.getAttempts() + 1);
+            Duration backoff = getBackoff(first.getAttempts());
+            first.setNextAttemptDate(now.plus(backoff));
+            wakeUpLater(backoff);
+            return false;
+        }
+        elementIndexingOutboxRepository.deleteAllByIdIn(batch.stream().map(ElementIndexingOutboxEntity::getId).toList());
+        appliedCounter.increment(batch.size());
+        backlog.addAndGet(-batch.size());
+        return batch.size() == batchSize;
+    }
+
+    /**
+     * Applies the batch to the live index, except the operations already applied by a previous attempt, then to the
+     * index being built if any
+     *
+     * @return true if the batch has been applied to both indexes
+     */
+    private boolean send(List<ElementIndexingOutboxEntity> batch, String shadowIndex) {
+        List<ElementIndexingOutboxEntity> liveBatch = batch.stream().filter(entity -> !entity.isLiveApplied()).toList();
+        try {
+            if (!liveBatch.isEmpty()) {
+                directoryElementInfosRepository.bulk(liveBatch.stream().map(this::toOperation).toList(), synchronous);
+                liveBatch.forEach(entity -> entity.setLiveApplied(true));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to send {} directory elements indexing operations to the live index (attempt {})", liveBatch.size(), batch.get(0).getAttempts() + 1, e);
+            return false;
+        }
+        if (shadowIndex == null) {
+            return true;
+        }
+        try {
+            directoryElementInfosRepository.bulk(batch.stream().map(this::toOperation).toList(), synchronous, shadowIndex);
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Unable to send {} directory elements indexing operations to the index {} (attempt {})", batch.size(), shadowIndex, batch.get(0).getAttempts() + 1, e);
+            return false;
+        }
+    }
+
+    @SneakyThrows
+    private ElementIndexingOutboxEntity toOutboxEntity(ElementInfosOperation operation, Instant creationDate) {
+        return ElementIndexingOutboxEntity.builder()
+            .creationDate(creationDate)
+            .operationType(operation.type().name())
+            .elementUuid(operation.elementUuid())
+            .document(operation.document() == null ? null : mapper.writeValueAsString(operation.document()))
+            .fields(operation.fields() == null ? null : mapper.writeValueAsString(operation.fields()))
+            .build();
+    }
+
+    @SneakyThrows
+    private ElementInfosOperation toOperation(ElementIndexingOutboxEntity entity) {
+        DirectoryElementInfos document = entity.getDocument() == null ? null : mapper.readValue(entity.getDocument(), DirectoryElementInfos.class);
+        Map<String, Object> fields = null;
+        if (entity.getFields() != null) {
+            fields = mapper.readValue(entity.getFields(), new TypeReference<Map<String, Object>>() { });
+            // the only field that is not a JSON type
+            fields.computeIfPresent(LAST_MODIFICATION_DATE_FIELD, (field, value) -> Instant.parse(value.toString()));
+        }
+        return new ElementInfosOperation(ElementInfosOperation.Type.valueOf(entity.getOperationType()), entity.getElementUuid(), document, fields);
+    }
+
+    /**
+     * @return the index filled by the running REBUILD job, null if none
+     */
+    private String getShadowIndexName() {
+        Instant now = Instant.now();
+        if (now.isBefore(shadowIndexCheckDate.plusMillis(shadowRefreshInterval))) {
+            return shadowIndexName;
+        }
+        try {
+            shadowIndexName = reindexJobRepository.findFirstByTypeAndStatusAndUpdateDateAfter(ReindexJobEntity.Type.REBUILD,
+                    ReindexJobEntity.Status.RUNNING, now.minusMillis(reindexStaleTimeout))
+                .map(ReindexJobEntity::getIndexName)
+                .orElse(null);
+            shadowIndexCheckDate = now;
+        } catch (Exception e) {
+            // the last known index is kept, checked again on the next batch
+            LOGGER.warn("Unable to read the running reindex job", e);
+        }
+        return shadowIndexName;
+    }
+
+    private Duration getBackoff(int attempts) {
+        long delay = initialBackoff << Math.min(attempts - 1, 30);
+        return Duration.ofMillis(delay > 0 ? Math.min(delay, maxBackoff) : maxBackoff);
+    }
+
+    private double getLag() {
+        try {
+            return elementIndexingOutboxRepository.findOldestCreationDate()
+                .map(creationDate -> Duration.between(creationDate, Instant.now()).toMillis() / 1000.0)
+                .orElse(0.0);
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+}
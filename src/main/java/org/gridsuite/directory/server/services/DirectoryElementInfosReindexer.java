@@ -0,0 +1,483 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import com.google.common.util.concurrent.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
+import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.elasticsearch.ElementInfosOperation;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository.IndexedElement;
+import org.gridsuite.directory.server.repository.ReindexJobEntity;
+import org.gridsuite.directory.server.repository.ReindexJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.Queries;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexInformation;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.gridsuite.directory.server.repository.ReindexJobEntity.Status.*;
+import static org.gridsuite.directory.server.repository.ReindexJobEntity.Type.REBUILD;
+import static org.gridsuite.directory.server.repository.ReindexJobEntity.Type.REINDEX;
+
+/**
+ * Reindexation jobs of the directory elements, run in the background: the element table is read page after page by
+ * id order, without the references, and each page is sent by a bulk request while the next one is read. The number
+ * of bulk requests in flight is bounded, so the memory used does not depend on the number of elements, and the number
+ * of documents sent per second can be limited.
+ * <p>
+ * The id of the last element indexed, with all the previous ones, is saved in the job after each page: a failed job,
+ * or a job whose instance stopped, is resumed from it. Only one job runs at a time.
+ * <p>
+ * A REBUILD job fills a new timestamped index, receiving also the operations of the indexers of all the instances
+ * meanwhile, which read it from the running job. The copy starts once they all have seen the job. A copied document
+ * never replaces the one written by an indexer, but may be older than an operation that found no document to apply
+ * to: the elements modified since the job started are copied again, replacing their documents. The changes that do
+ * not modify their elements, deletions and moves, may also have reached the new index before the copy of their
+ * documents: the documents of the new index are then compared with their elements, the ones of the deleted elements
+ * are removed and the ones with other attributes or paths are replaced. Then the live index name, an alias, is
+ * atomically moved to the new index and the old index is deleted.
+ *
+ * @author agent <agent at local>
+ */
+@Service
+public class DirectoryElementInfosReindexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryElementInfosReindexer.class);
+
+    private static final DateTimeFormatter INDEX_SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
+
+    private static final String DEFAULT_NUMBER_OF_REPLICAS = "1";
+
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+
+    private record PageInFlight(Future<?> future, UUID lastElementId, int size) { }
+
+    private final DirectoryElementRepository directoryElementRepository;
+
+    private final DirectoryElementInfosRepository directoryElementInfosRepository;
+
+    private final ReindexJobRepository reindexJobRepository;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final AtomicReference<UUID> runningJob = new AtomicReference<>();
+
+    private ExecutorService executorService;
+
+    // run the jobs in the requesting thread (used by the tests)
+    private final boolean synchronous;
+
+    private final int batchSize;
+
+    // maximum number of bulk requests in flight
+    private final int concurrency;
+
+    // 0 for no limit
+    private final double maxDocumentsPerSecond;
+
+    // a running job without checkpoint for this delay is considered stopped with its instance, in ms
+    private final long staleTimeout;
+
+    // delay for the indexers of all the instances to send their operations to the index of a starting REBUILD job,
+    // longer than their shadow refresh interval and flush interval, in ms
+    private final long shadowPropagationDelay;
+
+    public DirectoryElementInfosReindexer(DirectoryElementRepository directoryElementRepository,
+                                          DirectoryElementInfosRepository directoryElementInfosRepository,
+                                          ReindexJobRepository reindexJobRepository,
+                                          ElasticsearchOperations elasticsearchOperations,
+                                          ElasticsearchClient elasticsearchClient,
+                                          @Value("${directory.elasticsearch.reindex.synchronous:false}") boolean synchronous,
+                                          @Value("${spring.data.elasticsearch.partition-size:10000}") int batchSize,
+                                          @Value("${directory.elasticsearch.reindex.concurrency:2}") int concurrency,
+                                          @Value("${directory.elasticsearch.reindex.max-documents-per-second:0}") double maxDocumentsPerSecond,
+                                          @Value("${directory.elasticsearch.reindex.stale-timeout:300000}") long staleTimeout,
+                                          @Value("${directory.elasticsearch.reindex.shadow-propagation-delay:5000}") long shadowPropagationDelay) {
+        this.directoryElementRepository = directoryElementRepository;
+        this.directoryElementInfosRepository = directoryElementInfosRepository;
+        this.reindexJobRepository = reindexJobRepository;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.elasticsearchClient = elasticsearchClient;
+        this.synchronous = synchronous;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxDocumentsPerSecond = maxDocumentsPerSecond;
+        this.staleTimeout = staleTimeout;
+        this.shadowPropagationDelay = shadowPropagationDelay;
+    }
+
+    @PostConstruct
+    private void postConstruct() {
+        executorService = Executors.newSingleThreadExecutor();
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Starts writing the documents of all the elements in the live index, the documents of the elements deleted in
+     * the meantime are not removed
+     *
+     * @return the id of the job
+     */
+    public UUID reindex() {
+        return start(REINDEX, getLiveIndexName());
+    }
+
+    /**
+     * Starts rebuilding the index in a new index, the live index stays searchable meanwhile
+     *
+     * @return the id of the job
+     */
+    public UUID rebuild() {
+        return start(REBUILD, getLiveIndexName() + "-" + INDEX_SUFFIX_FORMATTER.format(Instant.now()));
+    }
+
+    /**
+     * Resumes a failed job, or a job whose instance stopped, from its last checkpoint
+     */
+    public UUID resume(UUID jobId) {
+        ReindexJobEntity job = getJob(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reindex job " + jobId + " not found"));
+        if (job.getStatus() == SUCCEEDED || job.getStatus() == RUNNING && !isStale(job)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Reindex job " + jobId + " is " + job.getStatus());
+        }
+        if (job.getType() == REBUILD && !indexExists(job.getIndexName())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The index " + job.getIndexName() + " of reindex job " + jobId + " has been deleted");
+        }
+        lock(jobId);
+        job.setStatus(RUNNING);
+        job.setRunStartDate(Instant.now());
+        job.setRunStartCount(job.getIndexedCount());
+        job.setUpdateDate(job.getRunStartDate());
+        job.setEndDate(null);
+        job.setError(null);
+        submit(reindexJobRepository.save(job));
+        return jobId;
+    }
+
+    /**
+     * Replaces the live index by an empty one. After a rebuild the live index name is an alias: the rebuilt index it
+     * points to is deleted, with the indexes of the abandoned jobs, and the live index is created again under this name
+     */
+    public void recreateLiveIndex() {
+        UUID lockId = UUID.randomUUID();
+        lock(lockId);
+        try {
+            List<String> rebuiltIndexNames = elasticsearchOperations.indexOps(IndexCoordinates.of(getLiveIndexName() + "-*")).getInformation().stream()
+                    .map(IndexInformation::getName)
+                    .toList();
+            if (!rebuiltIndexNames.isEmpty() && !elasticsearchOperations.indexOps(IndexCoordinates.of(rebuiltIndexNames.toArray(String[]::new))).delete()) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to delete elements ElasticSearch index");
+            }
+            IndexOperations indexOperations = elasticsearchOperations.indexOps(DirectoryElementInfos.class);
+            // live index created before the alias
+            if (indexOperations.exists() && !indexOperations.delete()) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to delete elements ElasticSearch index");
+            }
+            if (!indexOperations.createWithMapping()) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to create elements ElasticSearch index");
+            }
+        } finally {
+            runningJob.compareAndSet(lockId, null);
+        }
+    }
+
+    public Optional<ReindexJobEntity> getJob(UUID jobId) {
+        return reindexJobRepository.findById(jobId);
+    }
+
+    private UUID start(ReindexJobEntity.Type type, String indexName) {
+        UUID jobId = UUID.randomUUID();
+        lock(jobId);
+        Instant now = Instant.now();
+        ReindexJobEntity job = ReindexJobEntity.builder()
+                .id(jobId)
+                .type(type)
+                .indexName(indexName)
+                .status(RUNNING)
+                .totalCount(directoryElementRepository.count())
+                .runStartDate(now)
+                .creationDate(now)
+                .updateDate(now)
+                .build();
+        try {
+            if (type == REBUILD) {
+                createIndex(indexName);
+            }
+        } catch (IOException | RuntimeException e) {
+            runningJob.set(null);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to create the index " + indexName, e);
+        }
+        submit(reindexJobRepository.save(job));
+        return jobId;
+    }
+
+    private void lock(UUID jobId) {
+        if (!runningJob.compareAndSet(null, jobId)
+            || reindexJobRepository.existsByStatusAndUpdateDateAfter(RUNNING, Instant.now().minusMillis(staleTimeout))) {
+            runningJob.compareAndSet(jobId, null);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A reindex job is already running");
+        }
+    }
+
+    private boolean isStale(ReindexJobEntity job) {
+        return !job.getId().equals(runningJob.get()) && job.getUpdateDate().isBefore(Instant.now().minusMillis(staleTimeout));
+    }
+
+    private void submit(ReindexJobEntity job) {
+        Runnable task = () -> {
+            try {
+                run(job);
+            } finally {
+                runningJob.set(null);
+            }
+        };
+        if (synchronous) {
+            task.run();
+        } else {
+            executorService.execute(task);
+        }
+    }
+
+    private void run(ReindexJobEntity job) {
+        LOGGER.info("Reindex job {}: {} into {} from element {}", job.getId(), job.getType(), job.getIndexName(), job.getLastElementId());
+        try {
+            if (job.getType() == REBUILD) {
+                // the elements changed from now on are written in both indexes, a document already there is not replaced
+                Thread.sleep(shadowPropagationDelay);
+                copyElements(job, ElementInfosOperation::create, operations -> directoryElementInfosRepository.bulk(operations, false, job.getIndexName()));
+                copyModifiedElements(job);
+                reconcileDocuments(job);
+                replaceLiveIndex(job.getIndexName());
+            } else {
+                copyElements(job, ElementInfosOperation::index, operations -> directoryElementInfosRepository.bulk(operations, false));
+                elasticsearchOperations.indexOps(DirectoryElementInfos.class).refresh();
+            }
+            end(job, SUCCEEDED, null);
+            LOGGER.info("Reindex job {}: {} directory elements indexed into {}", job.getId(), job.getIndexedCount(), job.getIndexName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            end(job, FAILED, "Interrupted");
+        } catch (Exception e) {
+            LOGGER.error("Reindex job {} failed after element {}", job.getId(), job.getLastElementId(), e);
+            end(job, FAILED, e.getMessage());
+        }
+    }
+
+    private void end(ReindexJobEntity job, ReindexJobEntity.Status status, String error) {
+        job.setStatus(status);
+        job.setError(error);
+        job.setEndDate(Instant.now());
+        reindexJobRepository.save(job);
+    }
+
+    private void copyElements(ReindexJobEntity job, Function<DirectoryElementInfos, ElementInfosOperation> toOperation,
+                              Consumer<List<ElementInfosOperation>> sender) throws InterruptedException, ExecutionException {
+        ExecutorService bulkExecutorService = Executors.newFixedThreadPool(concurrency);
+        RateLimiter rateLimiter = maxDocumentsPerSecond > 0 ? RateLimiter.create(maxDocumentsPerSecond) : null;
+        Deque<PageInFlight> pagesInFlight = new ArrayDeque<>();
+        try {
+            List<IndexedElement> page = getPage(job.getLastElementId());
+            while (!page.isEmpty()) {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire(page.size());
+                }
+                List<ElementInfosOperation> operations = page.stream().map(element -> toOperation.apply(element.toDirectoryElementInfos())).toList();
+                UUID lastElementId = page.get(page.size() - 1).getId();
+                pagesInFlight.addLast(new PageInFlight(bulkExecutorService.submit(() -> sender.accept(operations)), lastElementId, page.size()));
+                // the checkpoint follows the pages in order, waiting for the oldest one when too many are in flight
+                while (!pagesInFlight.isEmpty() && (pagesInFlight.size() > concurrency || pagesInFlight.peekFirst().future().isDone())) {
+                    checkpoint(job, pagesInFlight.pollFirst());
+                }
+                page = page.size() < batchSize ? List.of() : getPage(lastElementId);
+            }
+            while (!pagesInFlight.isEmpty()) {
+                checkpoint(job, pagesInFlight.pollFirst());
+            }
+        } finally {
+            bulkExecutorService.shutdownNow();
+        }
+    }
+
+    // catch-up pass, replacing the documents copied before the last change of their element
+    private void copyModifiedElements(ReindexJobEntity job) {
+        List<IndexedElement> page = directoryElementRepository.findIndexedElementsModifiedSince(job.getCreationDate(), PageRequest.ofSize(batchSize));
+        int count = 0;
+        while (!page.isEmpty()) {
+            directoryElementInfosRepository.bulk(page.stream().map(element -> ElementInfosOperation.index(element.toDirectoryElementInfos())).toList(), false, job.getIndexName());
+            count += page.size();
+            UUID lastElementId = page.get(page.size() - 1).getId();
+            page = page.size() < batchSize ? List.of()
+                : directoryElementRepository.findIndexedElementsModifiedSinceAfter(job.getCreationDate(), lastElementId, PageRequest.ofSize(batchSize));
+        }
+        LOGGER.info("Reindex job {}: {} directory elements modified since {} copied again", job.getId(), count, job.getCreationDate());
+    }
+
+    // catch-up pass over all the documents of the new index, for the deletions and moves copied over
+    private void reconcileDocuments(ReindexJobEntity job) {
+        IndexCoordinates index = IndexCoordinates.of(job.getIndexName());
+        elasticsearchOperations.indexOps(index).refresh();
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(Queries.matchAllQueryAsQuery())
+                .withPageable(PageRequest.ofSize(batchSize))
+                .build();
+        int count = 0;
+        try (SearchHitsIterator<DirectoryElementInfos> hits = elasticsearchOperations.searchForStream(query, DirectoryElementInfos.class, index)) {
+            List<DirectoryElementInfos> documents = new ArrayList<>(batchSize);
+            while (hits.hasNext()) {
+                documents.add(hits.next().getContent());
+                if (documents.size() == batchSize || !hits.hasNext()) {
+                    count += reconcileDocuments(documents, job.getIndexName());
+                    documents.clear();
+                }
+            }
+        }
+        LOGGER.info("Reindex job {}: {} documents of deleted or moved directory elements removed or replaced", job.getId(), count);
+    }
+
+    /**
+     * @return the number of documents removed or replaced
+     */
+    private int reconcileDocuments(List<DirectoryElementInfos> documents, String indexName) {
+        Map<UUID, DirectoryElementInfos> expectedDocuments = directoryElementRepository.findIndexedElementsByIdIn(documents.stream().map(DirectoryElementInfos::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(IndexedElement::getId, IndexedElement::toDirectoryElementInfos));
+        List<ElementInfosOperation> operations = new ArrayList<>();
+        for (DirectoryElementInfos document : documents) {
+            DirectoryElementInfos expectedDocument = expectedDocuments.get(document.getId());
+            if (expectedDocument == null) {
+                operations.add(ElementInfosOperation.delete(document.getId()));
+            } else if (!isUpToDate(document, expectedDocument)) {
+                operations.add(ElementInfosOperation.index(expectedDocument));
+            }
+        }
+        if (!operations.isEmpty()) {
+            directoryElementInfosRepository.bulk(operations, false, indexName);
+        }
+        return operations.size();
+    }
+
+    // the modification dates are not compared, the index does not keep their full precision
+    private static boolean isUpToDate(DirectoryElementInfos document, DirectoryElementInfos expectedDocument) {
+        return Objects.equals(document.getName(), expectedDocument.getName())
+            && Objects.equals(document.getParentId(), expectedDocument.getParentId())
+            && Objects.equals(document.getType(), expectedDocument.getType())
+            && Objects.equals(document.getOwner(), expectedDocument.getOwner())
+            && Objects.equals(document.getPathUuid(), expectedDocument.getPathUuid())
+            && Objects.equals(document.getPathName(), expectedDocument.getPathName());
+    }
+
+    private List<IndexedElement> getPage(UUID lastElementId) {
+        return lastElementId == null
+            ? directoryElementRepository.findIndexedElements(PageRequest.ofSize(batchSize))
+            : directoryElementRepository.findIndexedElementsAfter(lastElementId, PageRequest.ofSize(batchSize));
+    }
+
+    private void checkpoint(ReindexJobEntity job, PageInFlight page) throws InterruptedException, ExecutionException {
+        page.future().get();
+        job.setLastElementId(page.lastElementId());
+        job.setIndexedCount(job.getIndexedCount() + page.size());
+        job.setUpdateDate(Instant.now());
+        reindexJobRepository.save(job);
+    }
+
+    private String getLiveIndexName() {
+        return elasticsearchOperations.getIndexCoordinatesFor(DirectoryElementInfos.class).getIndexName();
+    }
+
+    private boolean indexExists(String indexName) {
+        try {
+            return elasticsearchClient.indices().exists(e -> e.index(indexName)).value();
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to check the index " + indexName, e);
+        }
+    }
+
+    // same settings and mapping as the live index, without refresh nor replicas while it is filled
+    private void createIndex(String indexName) throws IOException {
+        IndexOperations indexOperations = elasticsearchOperations.indexOps(IndexCoordinates.of(indexName));
+        indexOperations.create(indexOperations.createSettings(DirectoryElementInfos.class), indexOperations.createMapping(DirectoryElementInfos.class));
+        elasticsearchClient.indices().putSettings(p -> p.index(indexName)
+                .settings(s -> s.refreshInterval(t -> t.time("-1")).numberOfReplicas("0")));
+    }
+
+    private void replaceLiveIndex(String indexName) throws IOException {
+        String aliasName = getLiveIndexName();
+        String numberOfReplicas = getNumberOfReplicas(aliasName);
+        elasticsearchClient.indices().putSettings(p -> p.index(indexName)
+                .settings(s -> s.refreshInterval(t -> t.time(DEFAULT_REFRESH_INTERVAL)).numberOfReplicas(numberOfReplicas)));
+        elasticsearchClient.indices().refresh(r -> r.index(indexName));
+        moveAlias(aliasName, indexName);
+        // the old index and the ones of the abandoned jobs
+        List<String> oldIndexNames = elasticsearchClient.indices().get(g -> g.index(aliasName + "-*")).result().keySet().stream()
+                .filter(name -> !name.equals(indexName))
+                .toList();
+        if (!oldIndexNames.isEmpty()) {
+            elasticsearchClient.indices().delete(d -> d.index(oldIndexNames));
+            LOGGER.info("Old indexes {} deleted", oldIndexNames);
+        }
+    }
+
+    private String getNumberOfReplicas(String aliasName) throws IOException {
+        if (!elasticsearchClient.indices().exists(e -> e.index(aliasName)).value()) {
+            return DEFAULT_NUMBER_OF_REPLICAS;
+        }
+        return elasticsearchClient.indices().getSettings(g -> g.index(aliasName)).result().values().stream()
+                .map(IndexState::settings)
+                .filter(Objects::nonNull)
+                .map(settings -> settings.index() != null ? settings.index().numberOfReplicas() : settings.numberOfReplicas())
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(DEFAULT_NUMBER_OF_REPLICAS);
+    }
+
+    private void moveAlias(String aliasName, String indexName) throws IOException {
+        List<Action> actions = new ArrayList<>();
+        if (elasticsearchClient.indices().existsAlias(e -> e.name(aliasName)).value()) {
+            elasticsearchClient.indices().getAlias(g -> g.name(aliasName)).result().keySet()
+                    .forEach(oldIndexName -> actions.add(Action.of(a -> a.remove(r -> r.index(oldIndexName).alias(aliasName)))));
+        } else if (elasticsearchClient.indices().exists(e -> e.index(aliasName)).value()) {
+            // index created before the alias, deleted by the same atomic request
+            actions.add(Action.of(a -> a.removeIndex(r -> r.index(aliasName))));
+        }
+        actions.add(Action.of(a -> a.add(ad -> ad.index(indexName).alias(aliasName))));
+        elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+    }
+}
@@ -8,33 +8,57 @@ package org.gridsuite.directory.server.services;
 
 import com.google.common.collect.Lists;
 import lombok.NonNull;
-import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
-import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.dto.ElementAttributes;
+import org.gridsuite.directory.server.dto.ElementsCursor;
+import org.gridsuite.directory.server.dto.ElementsSort;
+import org.gridsuite.directory.server.error.DirectoryException;
 import org.gridsuite.directory.server.repository.DirectoryElementEntity;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.DirectoryElementRepositoryCustom.ElementModification;
+import org.gridsuite.directory.server.repository.ElementClosureRepository;
+import org.gridsuite.directory.server.services.PermissionService.UserPrincipals;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.gridsuite.directory.server.DirectoryService.DIRECTORY;
+import static org.gridsuite.directory.server.error.DirectoryBusinessErrorCode.DIRECTORY_MAX_DEPTH_EXCEEDED;
+import static org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepositoryCustom.LAST_MODIFICATION_DATE_FIELD;
+import static org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepositoryCustom.NAME_FIELD;
 
 /**
  * @author Slimane Amar <slimane.amar at rte-france.com>
  */
 @Service
 public class DirectoryRepositoryService {
+    public record NameAndType(String name, String type) { }
+
     private final DirectoryElementRepository directoryElementRepository;
-    private final DirectoryElementInfosRepository directoryElementInfosRepository;
+    private final ElementClosureRepository elementClosureRepository;
+    private final DirectoryTreeIndex directoryTreeIndex;
+    private final DirectoryElementInfosIndexer directoryElementInfosIndexer;
+
+    private static final int WALK_BATCH_SIZE = 1000;
 
-    @Value("${spring.data.elasticsearch.partition-size:10000}")
-    private int partitionSize;
+    @Value("${directory.deletion.chunk-size:1000}")
+    private int deletionChunkSize;
 
     public DirectoryRepositoryService(
             DirectoryElementRepository directoryElementRepository,
-            DirectoryElementInfosRepository directoryElementInfosRepository) {
+            ElementClosureRepository elementClosureRepository,
+            DirectoryTreeIndex directoryTreeIndex,
+            DirectoryElementInfosIndexer directoryElementInfosIndexer) {
         this.directoryElementRepository = directoryElementRepository;
-        this.directoryElementInfosRepository = directoryElementInfosRepository;
+        this.elementClosureRepository = elementClosureRepository;
+        this.directoryTreeIndex = directoryTreeIndex;
+        this.directoryElementInfosIndexer = directoryElementInfosIndexer;
     }
 
     public Optional<DirectoryElementEntity> getElementEntity(UUID elementUuid) {
@@ -46,56 +70,196 @@ public class DirectoryRepositoryService {
     }
 
     public boolean isRootDirectory(UUID directoryUuid) {
-        return getParentUuid(directoryUuid) == null;
+        return directoryTreeIndex.isRootDirectory(directoryUuid).orElseGet(() -> getParentUuid(directoryUuid) == null);
+    }
+
+    /**
+     * @return true if the element is an existing directory, false if it is unknown to the index or has been deleted
+     * meanwhile, the caller reading it to tell a missing element from an element of another type
+     */
+    public boolean isDirectory(UUID elementUuid) {
+        // a directory deleted by another instance can still be in the index until it is refreshed
+        return directoryTreeIndex.isDirectory(elementUuid) && directoryElementRepository.existsById(elementUuid);
     }
 
     public boolean isRootDirectoryExist(String rootName) {
-        return !directoryElementRepository.findRootDirectoriesByName(rootName).isEmpty();
+        return directoryTreeIndex.getDirectoryUuid(rootName, null).isPresent()
+                || !directoryElementRepository.findRootDirectoriesByName(rootName).isEmpty();
+    }
+
+    /**
+     * @param parentDirectoryUuid the parent directory, null to look for a root directory
+     */
+    public Optional<UUID> getDirectoryUuid(String directoryName, UUID parentDirectoryUuid) {
+        return directoryTreeIndex.getDirectoryUuid(directoryName, parentDirectoryUuid).or(() -> {
+            List<DirectoryElementEntity> directories = parentDirectoryUuid == null
+                    ? directoryElementRepository.findRootDirectoriesByName(directoryName)
+                    : directoryElementRepository.findDirectoriesByNameAndParentId(directoryName, parentDirectoryUuid);
+            return directories.stream().findFirst().map(DirectoryElementEntity::getId);
+        });
     }
 
     public boolean isElementExists(UUID parentDirectoryUuid, String elementName, String type) {
         return !directoryElementRepository.findByNameAndParentIdAndType(elementName, parentDirectoryUuid, type).isEmpty();
     }
 
-    private void saveElementsInfos(List<DirectoryElementEntity> directoryElements) {
-        Map<UUID, List<DirectoryElementEntity>> pathsCache = new HashMap<>();
-        List<DirectoryElementInfos> directoryElementInfos = directoryElements.stream()
-                .map(directoryElementEntity -> directoryElementEntity.toDirectoryElementInfos(getPath(directoryElementEntity.getParentId(), pathsCache)))
-                .toList();
-        Lists.partition(directoryElementInfos, partitionSize)
-                .parallelStream()
-                .forEach(directoryElementInfosRepository::saveAll);
+    private DirectoryElementEntity saveElementInfos(DirectoryElementEntity elementEntity) {
+        directoryElementInfosIndexer.index(elementEntity);
+        return elementEntity;
     }
 
-    private DirectoryElementEntity saveElementInfos(DirectoryElementEntity elementEntity) {
-        directoryElementInfosRepository.save(elementEntity.toDirectoryElementInfos(getPath(elementEntity.getParentId())));
+    private DirectoryElementEntity indexDirectory(DirectoryElementEntity elementEntity) {
+        if (DIRECTORY.equals(elementEntity.getType())) {
+            directoryTreeIndex.putDirectory(elementEntity);
+        }
         return elementEntity;
     }
 
-    public DirectoryElementEntity saveElement(DirectoryElementEntity elementEntity) {
-        return saveElementInfos(directoryElementRepository.save(elementEntity));
+    public DirectoryElementEntity insertElement(DirectoryElementEntity elementEntity) {
+        DirectoryElementEntity parent = elementEntity.getParentId() == null ? null : getDirectoryEntity(elementEntity.getParentId());
+        if (parent != null) {
+            checkDepth(elementEntity, parent, 0);
+        }
+        elementEntity.updatePaths(parent);
+        DirectoryElementEntity savedElementEntity = directoryElementRepository.save(elementEntity);
+        elementClosureRepository.insertSelf(savedElementEntity.getId());
+        if (savedElementEntity.getParentId() != null) {
+            elementClosureRepository.insertAncestors(savedElementEntity.getId(), savedElementEntity.getParentId());
+        }
+        return indexDirectory(saveElementInfos(savedElementEntity));
+    }
+
+    @Transactional
+    public DirectoryElementEntity updateElement(DirectoryElementEntity elementEntity, ElementAttributes newElementAttributes) {
+        String oldName = elementEntity.getName();
+        String oldNamePath = elementEntity.getNamePath();
+        DirectoryElementEntity savedElementEntity = directoryElementRepository.save(elementEntity.update(newElementAttributes));
+        // the description is not indexed, only a rename changes the document
+        if (!oldName.equals(savedElementEntity.getName())) {
+            directoryElementInfosIndexer.updateFields(Map.of(savedElementEntity.getId(), Map.of(NAME_FIELD, savedElementEntity.getName())));
+        }
+        if (DIRECTORY.equals(savedElementEntity.getType()) && oldNamePath != null && !oldNamePath.equals(savedElementEntity.getNamePath())) {
+            updateSubtreePaths(savedElementEntity.getPath(), oldNamePath, savedElementEntity);
+            // a rename is a move under the same ancestors: the descendants documents get the new name in their paths
+            directoryElementInfosIndexer.moveSubtree(savedElementEntity.getId(), savedElementEntity.getName(), savedElementEntity.getAncestorsUuids(),
+                    savedElementEntity.getAncestorsUuids(), savedElementEntity.getAncestorsNames());
+        }
+        return indexDirectory(savedElementEntity);
+    }
+
+    /**
+     * Moves several elements to a new parent directory: the directories one by one with their subtree, the other
+     * elements, without descendants, with a single statement per table
+     */
+    public void moveElements(List<DirectoryElementEntity> elementEntities, @NonNull UUID newParentUuid) {
+        DirectoryElementEntity newParent = getDirectoryEntity(newParentUuid);
+        elementEntities.forEach(elementEntity -> checkDepth(elementEntity, newParent,
+                DIRECTORY.equals(elementEntity.getType()) ? elementClosureRepository.findSubtreeHeight(elementEntity.getId()) : 0));
+
+        // the deepest directories first: moving a directory does not change the paths of the shallower ones
+        elementEntities.stream()
+                .filter(elementEntity -> DIRECTORY.equals(elementEntity.getType()))
+                .sorted(Comparator.comparingInt((DirectoryElementEntity elementEntity) -> elementEntity.getAncestorsUuids().size()).reversed())
+                .forEach(elementEntity -> moveElement(elementEntity, newParent));
+
+        List<DirectoryElementEntity> leaves = elementEntities.stream().filter(elementEntity -> !DIRECTORY.equals(elementEntity.getType())).toList();
+        if (leaves.isEmpty()) {
+            return;
+        }
+        List<UUID> leavesUuids = leaves.stream().map(DirectoryElementEntity::getId).toList();
+        directoryElementRepository.updateLeavesParent(leavesUuids, newParentUuid,
+                newParent.getPath() + DirectoryElementEntity.PATH_SEPARATOR, newParent.getNamePath() + DirectoryElementEntity.NAME_PATH_SEPARATOR);
+        elementClosureRepository.detachLeaves(leavesUuids);
+        elementClosureRepository.attachLeaves(leavesUuids, newParentUuid);
+        // the entities are detached by the update, they are only brought up to date for the indexation
+        leaves.forEach(elementEntity -> {
+            elementEntity.setParentId(newParentUuid);
+            elementEntity.updatePaths(newParent);
+        });
+        directoryElementInfosIndexer.index(leaves);
+    }
+
+    private DirectoryElementEntity moveElement(DirectoryElementEntity elementEntity, DirectoryElementEntity newParent) {
+        String oldPath = elementEntity.getPath();
+        String oldNamePath = elementEntity.getNamePath();
+        elementEntity.setParentId(newParent.getId());
+        elementEntity.updatePaths(newParent);
+        DirectoryElementEntity savedElementEntity = directoryElementRepository.save(elementEntity);
+        elementClosureRepository.detachSubtree(savedElementEntity.getId());
+        elementClosureRepository.attachSubtree(savedElementEntity.getId(), newParent.getId());
+        if (DIRECTORY.equals(savedElementEntity.getType()) && oldPath != null) {
+            updateSubtreePaths(oldPath, oldNamePath, savedElementEntity);
+            // the descendants documents are rewritten in place, without reloading them
+            directoryElementInfosIndexer.moveSubtree(savedElementEntity.getId(), savedElementEntity.getName(), DirectoryElementEntity.getAncestorsUuids(oldPath),
+                    savedElementEntity.getAncestorsUuids(), savedElementEntity.getAncestorsNames());
+        }
+        return indexDirectory(saveElementInfos(savedElementEntity));
+    }
+
+    private void updateSubtreePaths(String oldPath, String oldNamePath, DirectoryElementEntity subtreeRoot) {
+        directoryElementRepository.updateSubtreePaths(oldPath + DirectoryElementEntity.PATH_SEPARATOR + "%", oldPath.length(), subtreeRoot.getPath(),
+                oldNamePath.length(), subtreeRoot.getNamePath());
+    }
+
+    /**
+     * @param subtreeHeight the number of levels below the element, 0 for an element without descendants
+     */
+    private static void checkDepth(DirectoryElementEntity elementEntity, DirectoryElementEntity parent, int subtreeHeight) {
+        if (parent.getDepth() + 1 + subtreeHeight > DirectoryElementEntity.MAX_DEPTH) {
+            throw DirectoryException.of(DIRECTORY_MAX_DEPTH_EXCEEDED, "Element '%s' cannot be put in directory '%s': the tree would be deeper than %d levels",
+                    elementEntity.getName(), parent.getId(), DirectoryElementEntity.MAX_DEPTH);
+        }
+    }
+
+    private DirectoryElementEntity getDirectoryEntity(UUID directoryUuid) {
+        return directoryElementRepository.findById(directoryUuid)
+                .orElseThrow(() -> DirectoryException.createElementNotFound(DIRECTORY, directoryUuid));
     }
 
     public void deleteElement(UUID elementUuid) {
         directoryElementRepository.deleteById(elementUuid);
-        directoryElementInfosRepository.deleteById(elementUuid);
+        directoryElementInfosIndexer.delete(List.of(elementUuid));
+        directoryTreeIndex.removeDirectories(List.of(elementUuid));
     }
 
     public void deleteElements(List<UUID> elementUuids) {
-        directoryElementRepository.deleteAllById(elementUuids);
-        directoryElementInfosRepository.deleteAllById(elementUuids);
+        deleteAllById(elementUuids);
+        directoryElementInfosIndexer.delete(elementUuids);
+        directoryTreeIndex.removeDirectories(elementUuids);
     }
 
-    public boolean canRead(UUID id, String userId) {
-        return directoryElementRepository.existsByIdAndOwnerOrId(id, userId, id);
+    /**
+     * Deletes an element with all its descendants, the element closure rows are removed by cascade
+     *
+     * @return the uuids of the deleted elements, the given element being the last one
+     */
+    public List<UUID> deleteElementWithDescendants(UUID elementUuid) {
+        List<UUID> elementUuids = new ArrayList<>(directoryElementRepository.findAllDescendantsUuids(elementUuid));
+        elementUuids.add(elementUuid);
+        deleteAllById(elementUuids);
+        directoryElementInfosIndexer.deleteSubtree(elementUuid);
+        directoryTreeIndex.removeDirectories(List.of(elementUuid));
+        return elementUuids;
+    }
+
+    private void deleteAllById(List<UUID> elementUuids) {
+        Lists.partition(elementUuids, deletionChunkSize).forEach(chunk -> {
+            directoryElementRepository.deleteAllReferencesByElementIdIn(chunk);
+            directoryElementRepository.deleteAllById(chunk);
+        });
     }
 
-    public void reindexElements() {
-        reindexElements(directoryElementRepository.findAll());
+    public List<ElementModification> updateElementsLastModifiedAttributes(List<ElementModification> modifications) {
+        List<ElementModification> appliedModifications = directoryElementRepository.updateLastModifiedAttributes(modifications);
+        Map<UUID, Map<String, Object>> fieldsByElement = new HashMap<>();
+        appliedModifications.forEach(modification ->
+            fieldsByElement.put(modification.elementUuid(), Map.of(LAST_MODIFICATION_DATE_FIELD, modification.modificationDate())));
+        directoryElementInfosIndexer.updateFields(fieldsByElement);
+        return appliedModifications;
     }
 
-    public void reindexElements(@NonNull List<DirectoryElementEntity> elementEntities) {
-        saveElementsInfos(elementEntities);
+    public boolean canRead(UUID id, String userId) {
+        return directoryElementRepository.existsByIdAndOwnerOrId(id, userId, id);
     }
 
     public UUID getParentUuid(UUID elementUuid) {
@@ -113,20 +277,84 @@ public class DirectoryRepositoryService {
         return directoryElementRepository.findAllByParentId(parentId);
     }
 
-    public List<DirectoryElementRepository.ElementParentage> findAllByParentIdInAndTypeIn(List<UUID> parentIds, List<String> types) {
-        return directoryElementRepository.findAllByParentIdsAndElementTypes(parentIds, types);
+    /**
+     * @return the children of a directory, without their references, to read in a transaction
+     */
+    public Stream<DirectoryElementEntity> streamAllByParentId(UUID parentId) {
+        return directoryElementRepository.streamAllByParentId(parentId);
     }
 
-    public List<DirectoryElementEntity> findRootDirectories() {
-        return directoryElementRepository.findRootDirectories();
+    /**
+     * Fetches the references of the given elements by a single query, in the persistence context holding them
+     */
+    public void fetchReferences(List<DirectoryElementEntity> elements) {
+        if (!elements.isEmpty()) {
+            directoryElementRepository.findAllWithReferencesByIdIn(elements.stream().map(DirectoryElementEntity::getId).toList());
+        }
+    }
+
+    /**
+     * @param after the position of the last element of the previous page, null for the first page
+     * @return a page of the children of a directory, with their references
+     */
+    public List<DirectoryElementEntity> findChildrenPage(UUID parentUuid, List<String> types, ElementsSort sort, ElementsCursor after, int size) {
+        Pageable pageable = PageRequest.ofSize(size);
+        boolean allTypes = types.isEmpty();
+        List<DirectoryElementEntity> children = switch (sort) {
+            case NAME -> after == null
+                    ? directoryElementRepository.findChildrenOrderByName(parentUuid, allTypes, types, pageable)
+                    : directoryElementRepository.findChildrenOrderByNameAfter(parentUuid, allTypes, types, after.value(), after.id(), pageable);
+            case LAST_MODIFICATION_DATE -> {
+                if (after == null) {
+                    yield directoryElementRepository.findChildrenOrderByLastModificationDate(parentUuid, allTypes, types, pageable);
+                }
+                yield after.getLastModificationDate() == null
+                    ? directoryElementRepository.findChildrenOrderByLastModificationDateAfterNoDate(parentUuid, allTypes, types, after.id(), pageable)
+                    : directoryElementRepository.findChildrenOrderByLastModificationDateAfter(parentUuid, allTypes, types,
+                        after.getLastModificationDate(), after.id(), pageable);
+            }
+        };
+        fetchReferences(children);
+        return children;
+    }
+
+    /**
+     * Walks the readable descendants of a readable directory level by level: the readable children of up to
+     * WALK_BATCH_SIZE walked directories are read by a single query, joined with their permissions, then the
+     * sub-directories among them are walked in turn. The unreadable sub-directories are skipped with their whole subtree.
+     *
+     * @return the readable descendants, with their references, one batch of children at a time
+     */
+    public Stream<List<DirectoryElementEntity>> walkReadableDescendants(UUID directoryUuid, List<String> types, UserPrincipals principals) {
+        Deque<UUID> directoriesToWalk = new ArrayDeque<>(List.of(directoryUuid));
+        Supplier<List<DirectoryElementEntity>> nextBatch = () -> {
+            if (directoriesToWalk.isEmpty()) {
+                return null;
+            }
+            List<UUID> parentUuids = new ArrayList<>();
+            while (parentUuids.size() < WALK_BATCH_SIZE && !directoriesToWalk.isEmpty()) {
+                parentUuids.add(directoriesToWalk.poll());
+            }
+            List<DirectoryElementEntity> children = directoryElementRepository.findReadableChildrenWithReferences(parentUuids, types.isEmpty(), types,
+                principals.isAdmin(), principals.userIds(), principals.userGroupIds());
+            children.stream()
+                .filter(child -> child.getType().equals(DIRECTORY))
+                .forEach(child -> directoriesToWalk.add(child.getId()));
+            return children;
+        };
+        return Stream.iterate(nextBatch.get(), Objects::nonNull, batch -> nextBatch.get());
     }
 
-    public List<DirectoryElementEntity> findRootDirectoriesByName(String name) {
-        return directoryElementRepository.findRootDirectoriesByName(name);
+    public List<DirectoryElementEntity> findRootDirectories() {
+        return directoryElementRepository.findRootDirectories();
     }
 
-    public List<DirectoryElementEntity> findDirectoriesByNameAndParentId(String name, UUID parentId) {
-        return directoryElementRepository.findDirectoriesByNameAndParentId(name, parentId);
+    /**
+     * Locks the row of a directory until the end of the current transaction
+     */
+    public void lockDirectory(UUID directoryUuid) {
+        directoryElementRepository.findByIdForUpdate(directoryUuid)
+                .orElseThrow(() -> DirectoryException.createElementNotFound(DIRECTORY, directoryUuid));
     }
 
     public List<String> getNameByTypeAndParentIdAndNameStartWith(String type, UUID parentId, String name) {
@@ -134,18 +362,36 @@ public class DirectoryRepositoryService {
     }
 
     public List<DirectoryElementEntity> getPath(UUID elementId) {
-        return getPath(elementId, new HashMap<>());
-    }
-
-    public List<DirectoryElementEntity> getPath(UUID elementId, Map<UUID, List<DirectoryElementEntity>> pathsCache) {
-        // Test null for root directories
-        return elementId == null ? List.of() : pathsCache.computeIfAbsent(elementId, directoryElementRepository::findElementHierarchy);
+        return directoryElementRepository.findElementHierarchy(elementId);
     }
 
     public List<DirectoryElementEntity> findAllDescendants(@NonNull UUID elementId) {
         return directoryElementRepository.findAllDescendants(elementId);
     }
 
+    public List<UUID> findAllAncestorsUuids(@NonNull UUID elementId) {
+        return directoryElementRepository.findAllAncestorsUuids(elementId);
+    }
+
+    public boolean directoryHasElementOfNameAndType(UUID directoryUuid, String name, String type) {
+        return directoryElementRepository.existsByParentIdAndNameAndType(directoryUuid, name, type);
+    }
+
+    /**
+     * @return the given names and types already used by elements of the directory
+     */
+    public Set<NameAndType> findExistingNamesAndTypes(UUID directoryUuid, Collection<NameAndType> namesAndTypes) {
+        if (namesAndTypes.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> names = namesAndTypes.stream().map(NameAndType::name).collect(Collectors.toSet());
+        Set<String> types = namesAndTypes.stream().map(NameAndType::type).collect(Collectors.toSet());
+        return directoryElementRepository.findNamesAndTypes(directoryUuid, names, types).stream()
+                .map(element -> new NameAndType(element.getName(), element.getType()))
+                .filter(namesAndTypes::contains)
+                .collect(Collectors.toSet());
+    }
+
     public List<UUID> findAllDescendantsUuids(@NonNull UUID elementId) {
         return directoryElementRepository.findAllDescendantsUuids(elementId);
     }
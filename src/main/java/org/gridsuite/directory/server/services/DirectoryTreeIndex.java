@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import org.gridsuite.directory.server.repository.DirectoryElementEntity;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository.DirectoryNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In memory index of the directories tree (elements of type DIRECTORY only).
+ * The index is loaded at startup, updated after commit by the local writes and refreshed from the database
+ * when another instance notifies a change on the directory update stream. The local writes committed while the
+ * index is rebuilt are kept and applied again on the rebuilt index.
+ * A lookup that misses the index must be confirmed by the database, a directory created by another instance
+ * may not be known yet, and so must a hit before writing under it, a directory deleted by another instance
+ * may not be removed yet.
+ *
+ * @author agent <agent at local>
+ */
+@Service
+public class DirectoryTreeIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryTreeIndex.class);
+
+    // key of the root directories in the children maps
+    private static final UUID ROOT_KEY = new UUID(0L, 0L);
+
+    private record Node(UUID id, UUID parentId, String name) { }
+
+    private final DirectoryElementRepository directoryElementRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, Node> nodes = new HashMap<>();
+
+    // parent uuid -> (child name -> child uuid)
+    private final Map<UUID, Map<String, UUID>> childrenByName = new HashMap<>();
+
+    private volatile boolean loaded = false;
+
+    // changes committed since the oldest running rebuild started, null if none is running, guarded by the write lock
+    private List<Runnable> pendingChanges;
+
+    private int rebuildCount = 0;
+
+    private final boolean preload;
+
+    public DirectoryTreeIndex(DirectoryElementRepository directoryElementRepository,
+                              @Value("${directory.tree-index.preload:true}") boolean preload) {
+        this.directoryElementRepository = directoryElementRepository;
+        this.preload = preload;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!preload) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // the index will be loaded on first use
+            LOGGER.warn("Unable to load the directories tree index at startup", e);
+        }
+    }
+
+    public void rebuild() {
+        write(this::startRebuild);
+        List<DirectoryNode> directoryNodes;
+        try {
+            directoryNodes = directoryElementRepository.findAllDirectoryNodes();
+        } catch (RuntimeException e) {
+            write(this::endRebuild);
+            throw e;
+        }
+        write(() -> {
+            nodes.clear();
+            childrenByName.clear();
+            directoryNodes.forEach(this::put);
+            // the changes committed while the database was read may be missing from it, applying them again is harmless
+            pendingChanges.forEach(Runnable::run);
+            loaded = true;
+            endRebuild();
+        });
+        LOGGER.info("Directories tree index loaded with {} directories", directoryNodes.size());
+    }
+
+    public int size() {
+        return read(nodes::size);
+    }
+
+    public boolean isDirectory(UUID elementUuid) {
+        return read(() -> nodes.containsKey(elementUuid));
+    }
+
+    /**
+     * @return true if the element is a known root directory, false if it is a known sub directory, empty otherwise
+     */
+    public Optional<Boolean> isRootDirectory(UUID elementUuid) {
+        return read(() -> Optional.ofNullable(nodes.get(elementUuid)).map(node -> node.parentId() == null));
+    }
+
+    /**
+     * @param parentDirectoryUuid the parent directory, null to look for a root directory
+     */
+    public Optional<UUID> getDirectoryUuid(String directoryName, UUID parentDirectoryUuid) {
+        return read(() -> Optional.ofNullable(childrenByName.getOrDefault(key(parentDirectoryUuid), Map.of()).get(directoryName)));
+    }
+
+    /**
+     * Registers the directory once the current transaction, if any, is committed
+     */
+    public void putDirectory(DirectoryElementEntity directoryEntity) {
+        Node node = new Node(directoryEntity.getId(), directoryEntity.getParentId(), directoryEntity.getName());
+        afterCommit(() -> write(() -> put(node)));
+    }
+
+    /**
+     * Removes the directories, and their sub directories, once the current transaction, if any, is committed
+     */
+    public void removeDirectories(Collection<UUID> elementUuids) {
+        List<UUID> uuids = List.copyOf(elementUuids);
+        afterCommit(() -> write(() -> uuids.forEach(this::removeSubtree)));
+    }
+
+    /**
+     * Reloads the given directories with their sub directories, a directory not found anymore is removed with its subtree
+     */
+    public void refresh(Collection<UUID> directoryUuids) {
+        if (directoryUuids.isEmpty() || !loaded) {
+            return;
+        }
+        List<DirectoryNode> directoryNodes = directoryElementRepository.findDirectoryNodesAndChildren(directoryUuids);
+        write(() -> {
+            Set<UUID> foundUuids = new HashSet<>();
+            directoryNodes.forEach(directoryNode -> {
+                put(directoryNode);
+                foundUuids.add(directoryNode.getId());
+            });
+            for (UUID directoryUuid : directoryUuids) {
+                if (!foundUuids.contains(directoryUuid)) {
+                    removeSubtree(directoryUuid);
+                } else {
+                    // children moved to a refreshed directory have already been re-attached, the others are gone
+                    List.copyOf(childrenByName.getOrDefault(directoryUuid, Map.of()).values()).stream()
+                        .filter(childUuid -> !foundUuids.contains(childUuid))
+                        .forEach(this::removeSubtree);
+                }
+            }
+        });
+    }
+
+    private void put(DirectoryNode directoryNode) {
+        put(new Node(directoryNode.getId(), directoryNode.getParentId(), directoryNode.getName()));
+    }
+
+    private void put(Node node) {
+        Node oldNode = nodes.put(node.id(), node);
+        if (oldNode != null) {
+            detach(oldNode);
+        }
+        childrenByName.computeIfAbsent(key(node.parentId()), k -> new HashMap<>()).put(node.name(), node.id());
+    }
+
+    private void removeSubtree(UUID directoryUuid) {
+        Node node = nodes.remove(directoryUuid);
+        if (node == null) {
+            return;
+        }
+        detach(node);
+        Map<String, UUID> children = childrenByName.remove(directoryUuid);
+        if (children != null) {
+            children.values().forEach(this::removeSubtree);
+        }
+    }
+
+    private void detach(Node node) {
+        Map<String, UUID> siblings = childrenByName.get(key(node.parentId()));
+        if (siblings != null) {
+            siblings.remove(node.name(), node.id());
+            if (siblings.isEmpty()) {
+                childrenByName.remove(key(node.parentId()));
+            }
+        }
+    }
+
+    private void startRebuild() {
+        if (pendingChanges == null) {
+            pendingChanges = new ArrayList<>();
+        }
+        rebuildCount++;
+    }
+
+    private void endRebuild() {
+        if (--rebuildCount == 0) {
+            pendingChanges = null;
+        }
+    }
+
+    private static UUID key(UUID parentUuid) {
+        return parentUuid == null ? ROOT_KEY : parentUuid;
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        if (!loaded) {
+            rebuild();
+        }
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable writer) {
+        lock.writeLock().lock();
+        try {
+            writer.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private void apply(Runnable change) {
+        write(() -> {
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+            // before the first load, the whole index will be read on first use
+            if (loaded) {
+                change.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import org.gridsuite.directory.server.dto.ElementAttributes;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes elements read from a database stream as newline delimited JSON, batch after batch: each batch is mapped to
+ * its attributes, written and flushed, then the entities it loaded are detached, so that only one batch is held in
+ * memory whatever the number of elements.
+ * Must be called in the transaction reading the stream.
+ *
+ * @author agent <agent at local>
+ */
+@Service
+public class ElementAttributesStreamWriter {
+    public static final int BATCH_SIZE = 1000;
+
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+
+    private final ObjectWriter objectWriter;
+
+    private final EntityManager entityManager;
+
+    public ElementAttributesStreamWriter(ObjectMapper objectMapper, EntityManager entityManager) {
+        this.objectWriter = objectMapper.writerFor(ElementAttributes.class);
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * @param mapper maps a batch of the source to the attributes to write, some elements can be left out (unreadable...)
+     */
+    public <T> void write(Stream<T> source, Function<List<T>, Stream<ElementAttributes>> mapper, OutputStream outputStream) throws IOException {
+        Iterator<T> iterator = source.iterator();
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            if (batch.size() == BATCH_SIZE || !iterator.hasNext()) {
+                writeBatch(mapper.apply(batch), outputStream);
+                batch.clear();
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * @param batches the batches of the source, read one at a time
+     */
+    public <T> void writeBatches(Stream<List<T>> batches, Function<List<T>, Stream<ElementAttributes>> mapper, OutputStream outputStream) throws IOException {
+        for (Iterator<List<T>> it = batches.iterator(); it.hasNext();) {
+            writeBatch(mapper.apply(it.next()), outputStream);
+        }
+        outputStream.flush();
+    }
+
+    private void writeBatch(Stream<ElementAttributes> elements, OutputStream outputStream) throws IOException {
+        for (Iterator<ElementAttributes> it = elements.iterator(); it.hasNext();) {
+            // the stream of the response must not be closed by the writer
+            outputStream.write(objectWriter.writeValueAsBytes(it.next()));
+            outputStream.write(LINE_SEPARATOR);
+        }
+        outputStream.flush();
+        // the transaction is read only, nothing to flush before detaching
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,421 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.gridsuite.directory.server.DirectoryService;
+import org.gridsuite.directory.server.NotificationType;
+import org.gridsuite.directory.server.dto.DirectoryInfos;
+import org.gridsuite.directory.server.repository.NotificationOutboxEntity;
+import org.gridsuite.directory.server.repository.NotificationOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.gridsuite.directory.server.NotificationService.*;
+
+/**
+ * Publishes the directory update messages stored in the outbox.
+ * The messages are written in the transaction of the change they notify, the relay is woken up once the transaction
+ * is committed and a periodic sweep publishes the messages left by a failure or by another instance.
+ * The messages are sent in the order of their creation, per directory: a message that cannot be sent blocks the
+ * following messages of its directories until it is sent or dropped after the maximum number of attempts, so the
+ * notifications of a directory are never reordered, while the messages of the other directories are still sent.
+ * The messages without directory are ordered by their element.
+ * The updates of a directory created within the coalescing window are merged into a single message carrying all
+ * their element names, the following messages of the directory waiting for the end of the window. Only consecutive
+ * directory updates are merged, they are never moved across another kind of message (element deleted...) nor
+ * across another message of the directory (directory moved...).
+ *
+ * @author agent <agent at local>
+ */
+@Service
+public class NotificationOutboxRelay {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationOutboxRelay.class);
+    private static final String CATEGORY_BROKER_OUTPUT = DirectoryService.class.getName() + ".output-broker-messages";
+    private static final Logger MESSAGE_OUTPUT_LOGGER = LoggerFactory.getLogger(CATEGORY_BROKER_OUTPUT);
+
+    private static final String METRICS_PREFIX = "directory.notification.outbox.";
+
+    private final NotificationOutboxRepository notificationOutboxRepository;
+
+    private final StreamBridge directoryUpdatePublisher;
+
+    private final ObjectMapper mapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean(false);
+
+    private ScheduledExecutorService scheduledExecutorService;
+
+    private final Counter publishedCounter;
+
+    private final Counter failedCounter;
+
+    private final Counter droppedCounter;
+
+    private final Counter coalescedCounter;
+
+    // publish in the thread committing the messages instead of the background one (used by the tests)
+    private final boolean synchronous;
+
+    private final int batchSize;
+
+    // delay between two sweeps of the outbox, in ms
+    private final long sweepDelay;
+
+    private final int maxAttempts;
+
+    // delay before the first retry, in ms, doubled on each attempt
+    private final long initialBackoff;
+
+    private final long maxBackoff;
+
+    // delay during which the updates of a directory are merged, in ms, 0 to disable the coalescing
+    private final long coalescingWindow;
+
+    public NotificationOutboxRelay(NotificationOutboxRepository notificationOutboxRepository,
+                                   StreamBridge directoryUpdatePublisher,
+                                   ObjectMapper mapper,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${directory.notification.outbox.synchronous:false}") boolean synchronous,
+                                   @Value("${directory.notification.outbox.batch-size:100}") int batchSize,
+                                   @Value("${directory.notification.outbox.sweep-delay:5000}") long sweepDelay,
+                                   @Value("${directory.notification.outbox.retry.max-attempts:10}") int maxAttempts,
+                                   @Value("${directory.notification.outbox.retry.initial-backoff:1000}") long initialBackoff,
+                                   @Value("${directory.notification.outbox.retry.max-backoff:60000}") long maxBackoff,
+                                   @Value("${directory.notification.outbox.coalescing-window:500}") long coalescingWindow) {
+        this.notificationOutboxRepository = notificationOutboxRepository;
+        this.directoryUpdatePublisher = directoryUpdatePublisher;
+        this.mapper = mapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // the relay may be woken up after the commit of a transaction whose resources are still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.synchronous = synchronous;
+        this.batchSize = batchSize;
+        this.sweepDelay = sweepDelay;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.coalescingWindow = coalescingWindow;
+
+        publishedCounter = Counter.builder(METRICS_PREFIX + "published").description("Number of published directory update messages").register(meterRegistry);
+        failedCounter = Counter.builder(METRICS_PREFIX + "failed").description("Number of failed attempts to publish a directory update message").register(meterRegistry);
+        droppedCounter = Counter.builder(METRICS_PREFIX + "dropped").description("Number of directory update messages dropped after the maximum number of attempts").register(meterRegistry);
+        coalescedCounter = Counter.builder(METRICS_PREFIX + "coalesced").description("Number of directory updates merged into a previous update of their directory").register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + "backlog", this, NotificationOutboxRelay::getBacklog)
+            .description("Number of directory update messages waiting to be published")
+            .register(meterRegistry);
+        Gauge.builder(METRICS_PREFIX + "lag", this, NotificationOutboxRelay::getLag)
+            .description("Age in seconds of the oldest directory update message waiting to be published")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    private void postConstruct() {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        if (!synchronous) {
+            scheduledExecutorService.scheduleWithFixedDelay(this::publishAll, sweepDelay, sweepDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * Stores the message in the outbox, it will be published once the current transaction, if any, is committed
+     */
+    public void enqueue(NotificationOutboxEntity notification) {
+        notificationOutboxRepository.save(notification);
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            wakeUp();
+        } else if (!TransactionSynchronizationManager.hasResource(this)) {
+            // a single wake up for all the messages of the transaction
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(NotificationOutboxRelay.this);
+                }
+            });
+        }
+    }
+
+    private void wakeUp() {
+        if (synchronous) {
+            publishAll();
+        } else if (wakeUpPending.compareAndSet(false, true)) {
+            scheduledExecutorService.execute(() -> {
+                wakeUpPending.set(false);
+                publishAll();
+            });
+        }
+    }
+
+    private void wakeUpLater(Duration delay) {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.schedule(this::wakeUp, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publishes the outbox batch after batch, the messages to retry or to coalesce later blocking only the following
+     * messages of their directories
+     */
+    public void publishAll() {
+        try {
+            // carried from batch to batch, the messages of a blocked directory wait in the following batches too
+            Set<String> blockedKeys = new HashSet<>();
+            Long lastId = 0L;
+            do {
+                long afterId = lastId;
+                lastId = transactionTemplate.execute(status -> publishBatch(afterId, blockedKeys));
+            } while (lastId != null);
+        } catch (Exception e) {
+            LOGGER.error("Unable to publish the directory update messages of the outbox", e);
+        }
+    }
+
+    /**
+     * @param blockedKeys the ordering keys of the messages waiting, completed with the ones of this batch
+     * @return the id of the last message of the batch if it is complete, meaning more messages may be waiting, null otherwise
+     */
+    private Long publishBatch(long afterId, Set<String> blockedKeys) {
+        List<NotificationOutboxEntity> notifications = notificationOutboxRepository.findOldestForUpdate(afterId, PageRequest.of(0, batchSize));
+        Instant now = Instant.now();
+        List<Long> removedIds = new ArrayList<>();
+        Set<Long> coalescedIds = new HashSet<>();
+        // end of the first coalescing window to wait for
+        Instant wakeUpDate = null;
+        for (int i = 0; i < notifications.size(); i++) {
+            NotificationOutboxEntity notification = notifications.get(i);
+            if (coalescedIds.contains(notification.getId())) {
+                // already sent with a previous update of its directory
+                continue;
+            }
+            Set<String> keys = getOrderingKeys(notification);
+            if (!Collections.disjoint(keys, blockedKeys)) {
+                // waits for a previous message of one of its directories
+                blockedKeys.addAll(keys);
+                continue;
+            }
+            if (notification.getNextAttemptDate() != null && notification.getNextAttemptDate().isAfter(now)) {
+                blockedKeys.addAll(keys);
+                continue;
+            }
+            List<NotificationOutboxEntity> coalescedNotifications = List.of();
+            if (coalescingWindow > 0 && isDirectoryUpdate(notification)) {
+                Instant windowEnd = notification.getCreationDate().plusMillis(coalescingWindow);
+                if (windowEnd.isAfter(now)) {
+                    // the following updates of the directory may still come
+                    wakeUpDate = wakeUpDate == null || windowEnd.isBefore(wakeUpDate) ? windowEnd : wakeUpDate;
+                    blockedKeys.addAll(keys);
+                    continue;
+                }
+                coalescedNotifications = getCoalescedUpdates(notifications, i, keys, windowEnd, coalescedIds);
+            }
+            if (send(notification, coalescedNotifications)) {
+                removedIds.add(notification.getId());
+                coalescedCounter.increment(coalescedNotifications.size());
+                coalescedNotifications.forEach(coalescedNotification -> {
+                    removedIds.add(coalescedNotification.getId());
+                    coalescedIds.add(coalescedNotification.getId());
+                });
+            } else if (notification.getAttempts() + 1 >= maxAttempts) {
+                LOGGER.error("Directory update message {} dropped after {} attempts", notification.getId(), maxAttempts);
+                droppedCounter.increment();
+                removedIds.add(notification.getId());
+            } else {
+                // the following messages of its directories wait for this one, to keep the order of their notifications
+                notification.setAttempts(notification.getAttempts() + 1);
+                notification.setNextAttemptDate(now.plus(getBackoff(notification.getAttempts())));
+                blockedKeys.addAll(keys);
+            }
+        }
+        if (!removedIds.isEmpty()) {
+            notificationOutboxRepository.deleteAllByIdIn(removedIds);
+        }
+        if (wakeUpDate != null) {
+            wakeUpLater(Duration.between(now, wakeUpDate));
+        }
+        return notifications.size() == batchSize ? notifications.get(notifications.size() - 1).getId() : null;
+    }
+
+    /**
+     * @return the keys ordering the message: the uuids of its directories, its element or export uuid otherwise,
+     * the messages sharing a key are published in their order
+     */
+    private Set<String> getOrderingKeys(NotificationOutboxEntity notification) {
+        if (notification.getDirectoriesInfos() != null) {
+            try {
+                List<DirectoryInfos> directoriesInfos = mapper.readValue(notification.getDirectoriesInfos(), new TypeReference<List<DirectoryInfos>>() { });
+                if (!directoriesInfos.isEmpty() && directoriesInfos.stream().allMatch(directoryInfos -> directoryInfos.uuid() != null)) {
+                    return directoriesInfos.stream().map(directoryInfos -> directoryInfos.uuid().toString()).collect(Collectors.toSet());
+                }
+            } catch (JsonProcessingException e) {
+                LOGGER.warn("Unreadable directories of the directory update message {}", notification.getId());
+            }
+            return Set.of(notification.getDirectoriesInfos());
+        }
+        if (notification.getElementUuid() != null) {
+            return Set.of(notification.getElementUuid().toString());
+        }
+        if (notification.getExportUuid() != null) {
+            return Set.of(notification.getExportUuid().toString());
+        }
+        // several deleted elements
+        return Set.of(String.valueOf(notification.getPayload()));
+    }
+
+    private static boolean isDirectoryUpdate(NotificationOutboxEntity notification) {
+        return UPDATE_TYPE_DIRECTORIES.equals(notification.getUpdateType())
+            && NotificationType.UPDATE_DIRECTORY.name().equals(notification.getNotificationType());
+    }
+
+    /**
+     * @return the updates of the same directory following the given one in the run of directory updates it starts,
+     * created within its coalescing window, until another message of the directory
+     */
+    private List<NotificationOutboxEntity> getCoalescedUpdates(List<NotificationOutboxEntity> notifications, int index, Set<String> keys,
+                                                               Instant windowEnd, Set<Long> coalescedIds) {
+        NotificationOutboxEntity notification = notifications.get(index);
+        List<NotificationOutboxEntity> coalescedNotifications = new ArrayList<>();
+        for (NotificationOutboxEntity nextNotification : notifications.subList(index + 1, notifications.size())) {
+            if (!isDirectoryUpdate(nextNotification) || nextNotification.getCreationDate().isAfter(windowEnd)) {
+                break;
+            }
+            if (coalescedIds.contains(nextNotification.getId())) {
+                continue;
+            }
+            if (Objects.equals(notification.getDirectoriesInfos(), nextNotification.getDirectoriesInfos())
+                && Objects.equals(notification.getUserId(), nextNotification.getUserId())
+                && Objects.equals(notification.getIsDirectoryMoving(), nextNotification.getIsDirectoryMoving())
+                && Objects.equals(notification.getError(), nextNotification.getError())) {
+                coalescedNotifications.add(nextNotification);
+            } else if (!Collections.disjoint(keys, getOrderingKeys(nextNotification))) {
+                break;
+            }
+        }
+        return coalescedNotifications;
+    }
+
+    private boolean send(NotificationOutboxEntity notification, List<NotificationOutboxEntity> coalescedNotifications) {
+        try {
+            Message<String> message = toMessage(notification, coalescedNotifications);
+            MESSAGE_OUTPUT_LOGGER.debug("Sending message : {}", message);
+            if (directoryUpdatePublisher.send("publishDirectoryUpdate-out-0", message)) {
+                publishedCounter.increment();
+                return true;
+            }
+            LOGGER.warn("Directory update message {} not accepted by the broker", notification.getId());
+        } catch (Exception e) {
+            LOGGER.warn("Unable to send the directory update message {}", notification.getId(), e);
+        }
+        failedCounter.increment();
+        return false;
+    }
+
+    private Duration getBackoff(int attempts) {
+        long delay = initialBackoff << Math.min(attempts - 1, 30);
+        return Duration.ofMillis(delay > 0 ? Math.min(delay, maxBackoff) : maxBackoff);
+    }
+
+    private Message<String> toMessage(NotificationOutboxEntity notification, List<NotificationOutboxEntity> coalescedNotifications) throws JsonProcessingException {
+        MessageBuilder<String> messageBuilder = MessageBuilder.withPayload(notification.getPayload() == null ? "" : notification.getPayload())
+                .setHeader(HEADER_USER_ID, notification.getUserId())
+                .setHeader(HEADER_UPDATE_TYPE, notification.getUpdateType())
+                .setHeader(HEADER_ELEMENT_UUID, notification.getElementUuid())
+                .setHeader(HEADER_EXPORT_UUID, notification.getExportUuid())
+                .setHeader(HEADER_ERROR, notification.getError())
+                .setHeader(HEADER_IS_DIRECTORY_MOVING, notification.getIsDirectoryMoving());
+        List<String> elementNames = readElementNames(notification);
+        for (NotificationOutboxEntity coalescedNotification : coalescedNotifications) {
+            List<String> coalescedElementNames = readElementNames(coalescedNotification);
+            if (elementNames == null || coalescedElementNames == null) {
+                // no element names means the whole directory may have changed
+                elementNames = null;
+                break;
+            }
+            Set<String> mergedElementNames = new LinkedHashSet<>(elementNames);
+            mergedElementNames.addAll(coalescedElementNames);
+            elementNames = new ArrayList<>(mergedElementNames);
+        }
+        if (elementNames != null) {
+            messageBuilder.setHeader(HEADER_ELEMENT_NAMES, elementNames);
+        }
+        if (notification.getDirectoriesInfos() != null) {
+            messageBuilder.setHeader(HEADER_DIRECTORIES_INFOS, notification.getDirectoriesInfos())
+                .setHeader(HEADER_IS_PUBLIC_DIRECTORY, true); // null may only come from borked REST request
+        }
+        if (notification.getNotificationType() != null) {
+            messageBuilder.setHeader(HEADER_NOTIFICATION_TYPE, CASE_EXPORT_FINISHED.equals(notification.getNotificationType())
+                ? CASE_EXPORT_FINISHED
+                : NotificationType.valueOf(notification.getNotificationType()));
+        }
+        return messageBuilder.build();
+    }
+
+    private List<String> readElementNames(NotificationOutboxEntity notification) throws JsonProcessingException {
+        return notification.getElementNames() == null ? null : mapper.readValue(notification.getElementNames(), new TypeReference<List<String>>() { });
+    }
+
+    private double getBacklog() {
+        try {
+            return notificationOutboxRepository.count();
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    private double getLag() {
+        try {
+            return notificationOutboxRepository.findOldestCreationDate()
+                .map(creationDate -> Duration.between(creationDate, Instant.now()).toMillis() / 1000.0)
+                .orElse(0.0);
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+}
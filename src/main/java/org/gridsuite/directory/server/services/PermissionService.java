@@ -6,15 +6,15 @@
  */
 package org.gridsuite.directory.server.services;
 
+import com.google.common.collect.Lists;
 import org.gridsuite.directory.server.dto.PermissionDTO;
 import org.gridsuite.directory.server.dto.PermissionType;
-import org.gridsuite.directory.server.dto.UserGroupDTO;
 import org.gridsuite.directory.server.error.DirectoryException;
 import org.gridsuite.directory.server.repository.DirectoryElementEntity;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
 import org.gridsuite.directory.server.repository.PermissionEntity;
-import org.gridsuite.directory.server.repository.PermissionId;
 import org.gridsuite.directory.server.repository.PermissionRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -35,18 +35,18 @@ public class PermissionService {
 
     private final PermissionRepository permissionRepository;
     private final DirectoryElementRepository directoryElementRepository;
-    private final DirectoryRepositoryService directoryRepositoryService;
     private final UserAdminService userAdminService;
     private final RoleService roleService;
 
+    @Value("${directory.deletion.chunk-size:1000}")
+    private int deletionChunkSize;
+
     public PermissionService(PermissionRepository permissionRepository,
                              DirectoryElementRepository directoryElementRepository,
-                             DirectoryRepositoryService directoryRepositoryService,
                              UserAdminService userAdminService,
                              RoleService roleService) {
         this.permissionRepository = permissionRepository;
         this.directoryElementRepository = directoryElementRepository;
-        this.directoryRepositoryService = directoryRepositoryService;
         this.userAdminService = userAdminService;
         this.roleService = roleService;
     }
@@ -71,17 +71,62 @@ public class PermissionService {
     }
 
     public boolean hasReadPermissions(String userId, List<UUID> elementUuids) {
-        return roleService.isUserExploreAdmin() || directoryElementRepository.findAllByIdIn(elementUuids).stream().allMatch(element ->
-            //If it's a directory we check its own write permission else we check the permission on the element parent directory
-            checkPermission(userId, List.of(element.getType().equals(DIRECTORY) ? element.getId() : element.getParentId()), READ)
-        );
+        return hasPermissions(userId, elementUuids, READ);
     }
 
     public boolean hasManagePermission(String userId, List<UUID> elementUuids) {
-        return roleService.isUserExploreAdmin() || directoryElementRepository.findAllByIdIn(elementUuids).stream().allMatch(element ->
-            //If it's a directory we check its own write permission else we check the permission on the element parent directory
-            checkPermission(userId, List.of(element.getType().equals(DIRECTORY) ? element.getId() : element.getParentId()), MANAGE)
-        );
+        return hasPermissions(userId, elementUuids, MANAGE);
+    }
+
+    /**
+     * Returns the subset of the given elements on which the user has the given permission, the elements being already
+     * loaded by the caller.
+     * For a directory its own permissions are checked, for any other element the permissions of its parent directory.
+     * The user groups are fetched once and all the permissions are resolved with a single query.
+     *
+     * @param userId         User ID checking permissions for
+     * @param elements       Elements to check permissions on
+     * @param permissionType Type of permission to check (READ, WRITE, MANAGE)
+     * @return the authorized elements, in the given order
+     */
+    public List<DirectoryElementEntity> getAuthorizedElements(String userId, List<DirectoryElementEntity> elements, PermissionType permissionType) {
+        if (elements.isEmpty()) {
+            return List.of();
+        }
+        if (roleService.isUserExploreAdmin()) {
+            return elements;
+        }
+        return filterAuthorizedElements(userId, elements, permissionType);
+    }
+
+    public boolean hasReadPermission(String userId, DirectoryElementEntity element) {
+        return !getAuthorizedElements(userId, List.of(element), READ).isEmpty();
+    }
+
+    /**
+     * The principals whose permissions apply to a user, to be joined with the permissions in a query: the user itself,
+     * all the users and the groups of the user. The permissions of an admin are bypassed, its groups are not fetched.
+     */
+    public record UserPrincipals(boolean isAdmin, List<String> userIds, List<String> userGroupIds) { }
+
+    public UserPrincipals getUserPrincipals(String userId) {
+        boolean isAdmin = roleService.isUserExploreAdmin();
+        return new UserPrincipals(isAdmin, List.of(userId, ALL_USERS), isAdmin ? List.of() : getUserGroupIds(userId));
+    }
+
+    /**
+     * Counts, for each given directory, its children of the given types (sub-directories are always counted)
+     * that the user can read. Unreadable directories have no entry. Everything is computed with a single query.
+     */
+    public Map<UUID, Long> getReadableChildrenCounts(String userId, List<UUID> directoryUuids, List<String> types) {
+        if (directoryUuids.isEmpty()) {
+            return Map.of();
+        }
+        UserPrincipals principals = getUserPrincipals(userId);
+        return directoryElementRepository.countReadableChildrenByParentIds(directoryUuids, types, principals.isAdmin(),
+                principals.userIds(), principals.userGroupIds())
+            .stream()
+            .collect(Collectors.toMap(DirectoryElementRepository.ChildrenCount::getParentId, DirectoryElementRepository.ChildrenCount::getCount));
     }
 
     public void validateReadAccess(UUID directoryUuid, String userId) {
@@ -127,6 +172,10 @@ public class PermissionService {
         permissionRepository.deleteAllByElementId(elementUuid);
     }
 
+    public void deleteAllPermissionsForElements(List<UUID> elementUuids) {
+        Lists.partition(elementUuids, deletionChunkSize).forEach(permissionRepository::deleteAllByElementIdIn);
+    }
+
     public void grantOwnerManagePermission(UUID elementUuid, String ownerId) {
         permissionRepository.save(PermissionEntity.manage(elementUuid, ownerId, ""));
     }
@@ -161,14 +210,11 @@ public class PermissionService {
         List<DirectoryElementEntity> elements = directoryElementRepository.findAllByIdIn(elementUuids);
 
         // First, check parent permissions
-        for (DirectoryElementEntity element : elements) {
-            UUID idToCheck = element.getType().equals(DIRECTORY) ? element.getId() : element.getParentId();
-            if (!checkPermission(userId, List.of(idToCheck), WRITE)) {
-                throw new DirectoryException(
-                        DIRECTORY_PARENT_PERMISSION_DENIED,
-                        "User " + userId + " does not have write permission on parent folder"
-                );
-            }
+        if (filterAuthorizedElements(userId, elements, WRITE).size() != elements.size()) {
+            throw new DirectoryException(
+                    DIRECTORY_PARENT_PERMISSION_DENIED,
+                    "User " + userId + " does not have write permission on parent folder"
+            );
         }
 
         // Next, check target directory permission if specified
@@ -179,60 +225,70 @@ public class PermissionService {
             );
         }
 
-        // Finally, check child permissions if recursive check is enabled
-        if (recursiveCheck) {
-            for (DirectoryElementEntity element : elements) {
-                if (element.getType().equals(DIRECTORY)) {
-                    List<UUID> descendantsUuids = directoryRepositoryService.findAllDescendants(element.getId())
-                        .stream()
-                        .filter(e -> e.getType().equals(DIRECTORY))
-                        .map(DirectoryElementEntity::getId)
-                        .toList();
-                    if (!descendantsUuids.isEmpty() && !checkPermission(userId, descendantsUuids, WRITE)) {
-                        throw new DirectoryException(
-                                DIRECTORY_CHILD_PERMISSION_DENIED,
-                                "User " + userId + " does not have write permission on descendant folder"
-                        );
-                    }
-                }
-            }
+        // Finally, check child permissions if recursive check is enabled, on the whole subtrees by a single query
+        if (recursiveCheck && directoryElementRepository.existsDescendantDirectoryWithoutWritePermission(elementUuids,
+                List.of(userId, ALL_USERS), getUserGroupIds(userId))) {
+            throw new DirectoryException(
+                    DIRECTORY_CHILD_PERMISSION_DENIED,
+                    "User " + userId + " does not have write permission on descendant folder"
+            );
         }
     }
 
-    private boolean checkPermission(String userId, List<UUID> elementUuids, PermissionType permissionType) {
-        return elementUuids.stream().allMatch(uuid -> hasElementPermission(userId, uuid, permissionType));
-    }
-
-    private boolean hasElementPermission(String userId, UUID uuid, PermissionType permissionType) {
-        //Check global permission first
-        boolean globalPermission = checkPermission(permissionRepository.findById(new PermissionId(uuid, ALL_USERS, "")), permissionType);
-        if (globalPermission) {
+    private boolean hasPermissions(String userId, List<UUID> elementUuids, PermissionType permissionType) {
+        if (roleService.isUserExploreAdmin()) {
             return true;
         }
+        List<DirectoryElementEntity> elements = directoryElementRepository.findAllByIdIn(elementUuids);
+        return filterAuthorizedElements(userId, elements, permissionType).size() == elements.size();
+    }
 
-        //Then check user specific permission
-        boolean userPermission = checkPermission(permissionRepository.findById(new PermissionId(uuid, userId, "")), permissionType);
-        if (userPermission) {
-            return true;
+    private List<DirectoryElementEntity> filterAuthorizedElements(String userId, List<DirectoryElementEntity> elements, PermissionType permissionType) {
+        Set<UUID> authorizedDirectories = getAuthorizedDirectories(userId, elements.stream()
+            .map(PermissionService::getPermissionHolderUuid)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet()), permissionType);
+        return elements.stream()
+            .filter(element -> {
+                UUID permissionHolderUuid = getPermissionHolderUuid(element);
+                return permissionHolderUuid != null && authorizedDirectories.contains(permissionHolderUuid);
+            })
+            .toList();
+    }
+
+    private static UUID getPermissionHolderUuid(DirectoryElementEntity element) {
+        //If it's a directory we check its own permission else we check the permission on the element parent directory
+        return element.getType().equals(DIRECTORY) ? element.getId() : element.getParentId();
+    }
+
+    private boolean checkPermission(String userId, List<UUID> directoryUuids, PermissionType permissionType) {
+        return getAuthorizedDirectories(userId, directoryUuids, permissionType).containsAll(directoryUuids);
+    }
+
+    private Set<UUID> getAuthorizedDirectories(String userId, Collection<UUID> directoryUuids, PermissionType permissionType) {
+        if (directoryUuids.isEmpty()) {
+            return Set.of();
         }
+        return permissionRepository.findAllByElementIdInAndPrincipals(directoryUuids, List.of(userId, ALL_USERS), getUserGroupIds(userId))
+                .stream()
+                .filter(permission -> checkPermission(permission, permissionType))
+                .map(PermissionEntity::getElementId)
+                .collect(Collectors.toSet());
+    }
 
-        //Finally check group permission
+    private List<String> getUserGroupIds(String userId) {
         return userAdminService.getUserGroups(userId)
                 .stream()
-                .map(UserGroupDTO::id)
-                .anyMatch(groupId ->
-                        checkPermission(permissionRepository.findById(new PermissionId(uuid, "", groupId.toString())), permissionType)
-                );
-    }
-
-    private boolean checkPermission(Optional<PermissionEntity> permissionEntity, PermissionType permissionType) {
-        return permissionEntity
-            .map(p -> switch (permissionType) {
-                case READ -> Boolean.TRUE.equals(p.getRead());
-                case WRITE -> Boolean.TRUE.equals(p.getWrite());
-                case MANAGE -> Boolean.TRUE.equals(p.getManage());
-            })
-            .orElse(false);
+                .map(group -> group.id().toString())
+                .toList();
+    }
+
+    private boolean checkPermission(PermissionEntity permissionEntity, PermissionType permissionType) {
+        return switch (permissionType) {
+            case READ -> Boolean.TRUE.equals(permissionEntity.getRead());
+            case WRITE -> Boolean.TRUE.equals(permissionEntity.getWrite());
+            case MANAGE -> Boolean.TRUE.equals(permissionEntity.getManage());
+        };
     }
 
     /**
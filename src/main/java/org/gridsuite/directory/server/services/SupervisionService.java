@@ -3,38 +3,46 @@ package org.gridsuite.directory.server.services;
 import jakarta.validation.constraints.NotNull;
 import lombok.NonNull;
 import org.gridsuite.directory.server.dto.ElementAttributes;
-import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
+import org.gridsuite.directory.server.dto.ReindexJobInfos;
 import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.repository.DirectoryElementEntity;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.IndexOperations;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 public class SupervisionService {
     private final DirectoryRepositoryService repositoryService;
     private final DirectoryElementInfosRepository directoryElementInfosRepository;
     private final DirectoryElementRepository directoryElementRepository;
-    private final ElasticsearchOperations elasticsearchOperations;
+    private final DirectoryTreeIndex directoryTreeIndex;
+    private final DirectoryElementInfosReindexer directoryElementInfosReindexer;
+    private final ElementAttributesStreamWriter elementAttributesStreamWriter;
 
     public SupervisionService(
             DirectoryRepositoryService repositoryService,
             DirectoryElementInfosRepository directoryElementInfosRepository,
-            ElasticsearchOperations elasticsearchOperations,
-            DirectoryElementRepository directoryElementRepository
+            DirectoryElementRepository directoryElementRepository,
+            DirectoryTreeIndex directoryTreeIndex,
+            DirectoryElementInfosReindexer directoryElementInfosReindexer,
+            ElementAttributesStreamWriter elementAttributesStreamWriter
     ) {
         this.repositoryService = repositoryService;
         this.directoryElementInfosRepository = directoryElementInfosRepository;
-        this.elasticsearchOperations = elasticsearchOperations;
         this.directoryElementRepository = directoryElementRepository;
+        this.directoryTreeIndex = directoryTreeIndex;
+        this.directoryElementInfosReindexer = directoryElementInfosReindexer;
+        this.elementAttributesStreamWriter = elementAttributesStreamWriter;
     }
 
     @Transactional(readOnly = true)
@@ -44,11 +52,32 @@ public class SupervisionService {
 
     @Transactional(readOnly = true)
     public List<ElementAttributes> getUnmodifiedElementsByType(@NotNull String type, @NonNull Duration duration) {
+        Instant threshold = getUnmodifiedThreshold(duration);
+        return directoryElementRepository.findAllByTypeAndLastModificationDateBeforeOrderByLastModificationDateDesc(type, threshold).stream().map(ElementAttributes::toElementAttributes).toList();
+    }
+
+    // Same as getAllElementsByType, streamed from the database to the output stream as newline delimited JSON
+    @Transactional(readOnly = true)
+    public void writeAllElementsByType(@NotNull String type, OutputStream outputStream) throws IOException {
+        try (Stream<DirectoryElementEntity> elements = directoryElementRepository.streamAllByType(type)) {
+            elementAttributesStreamWriter.write(elements, batch -> batch.stream().map(ElementAttributes::toElementAttributes), outputStream);
+        }
+    }
+
+    // Same as getUnmodifiedElementsByType, streamed from the database to the output stream as newline delimited JSON
+    @Transactional(readOnly = true)
+    public void writeUnmodifiedElementsByType(@NotNull String type, @NonNull Duration duration, OutputStream outputStream) throws IOException {
+        Instant threshold = getUnmodifiedThreshold(duration);
+        try (Stream<DirectoryElementEntity> elements = directoryElementRepository.streamAllByTypeAndLastModificationDateBeforeOrderByLastModificationDateDesc(type, threshold)) {
+            elementAttributesStreamWriter.write(elements, batch -> batch.stream().map(ElementAttributes::toElementAttributes), outputStream);
+        }
+    }
+
+    private static Instant getUnmodifiedThreshold(Duration duration) {
         if (duration.isNegative() || duration.isZero()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duration must be strictly positive");
         }
-        Instant threshold = Instant.now().minus(duration);
-        return directoryElementRepository.findAllByTypeAndLastModificationDateBeforeOrderByLastModificationDateDesc(type, threshold).stream().map(ElementAttributes::toElementAttributes).toList();
+        return Instant.now().minus(duration);
     }
 
     // delete all directory elements without checking owner
@@ -60,23 +89,33 @@ public class SupervisionService {
         return directoryElementInfosRepository.count();
     }
 
-    @Transactional
-    public void reindexElements() {
-        repositoryService.reindexElements();
+    public int getDirectoryTreeIndexSize() {
+        return directoryTreeIndex.size();
     }
 
-    public void recreateIndex() {
-        IndexOperations indexOperations = elasticsearchOperations.indexOps(DirectoryElementInfos.class);
-        boolean isDeleted = indexOperations.delete();
-        if (!isDeleted) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
-                    "Failed to delete elements ElasticSearch index");
-        }
+    public void rebuildDirectoryTreeIndex() {
+        directoryTreeIndex.rebuild();
+    }
 
-        boolean isCreated = indexOperations.createWithMapping();
-        if (!isCreated) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
-                    "Failed to create elements ElasticSearch index");
-        }
+    public UUID reindexElements() {
+        return directoryElementInfosReindexer.reindex();
+    }
+
+    public UUID rebuildIndex() {
+        return directoryElementInfosReindexer.rebuild();
+    }
+
+    public ReindexJobInfos getReindexJob(UUID jobId) {
+        return directoryElementInfosReindexer.getJob(jobId)
+                .map(ReindexJobInfos::toReindexJobInfos)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Reindex job " + jobId + " not found"));
+    }
+
+    public UUID resumeReindexJob(UUID jobId) {
+        return directoryElementInfosReindexer.resume(jobId);
+    }
+
+    public void recreateIndex() {
+        directoryElementInfosReindexer.recreateLiveIndex();
     }
 }
@@ -6,16 +6,24 @@
  */
 package org.gridsuite.directory.server.services;
 
-import lombok.Setter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.gridsuite.directory.server.dto.UserGroupDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * @author Abdelsalem Hedhili <abdelsalem.hedhili at rte-france.com>
@@ -26,23 +34,77 @@ public class UserAdminService {
     private static final String USER_ADMIN_API_VERSION = "v1";
     private static final String GET_USER_GROUPS_URI = "/users/{sub}/groups";
     private static final String DELIMITER = "/";
+    private static final String USER_GROUPS_CACHE_NAME = "userGroups";
+    private static final String USER_GROUPS_REQUEST_ATTRIBUTE_PREFIX = UserAdminService.class.getName() + ".userGroups.";
     private final RestTemplate restTemplate;
-    @Setter
     private String userAdminServerBaseUri;
 
+    // Groups are shared by all the instances of a user request and only change on user-admin side:
+    // they are kept for a short time, and dropped as soon as an update is notified (see ConsumerService)
+    private final Cache<String, List<UserGroupDTO>> userGroupsCache;
+
     @Autowired
-    public UserAdminService(RestTemplate restTemplate, RemoteServicesProperties remoteServicesProperties) {
+    public UserAdminService(RestTemplate restTemplate, RemoteServicesProperties remoteServicesProperties, MeterRegistry meterRegistry,
+                            @Value("${directory.user-groups-cache.max-size:10000}") long userGroupsCacheMaxSize,
+                            @Value("${directory.user-groups-cache.ttl:PT1M}") Duration userGroupsCacheTtl) {
         this.userAdminServerBaseUri = remoteServicesProperties.getServiceUri("user-admin-server");
         this.restTemplate = restTemplate;
+        this.userGroupsCache = Caffeine.newBuilder()
+                .maximumSize(userGroupsCacheMaxSize)
+                .expireAfterWrite(userGroupsCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, userGroupsCache, USER_GROUPS_CACHE_NAME);
+    }
+
+    public void setUserAdminServerBaseUri(String userAdminServerBaseUri) {
+        this.userAdminServerBaseUri = userAdminServerBaseUri;
+        invalidateAllUserGroups();
     }
 
+    /**
+     * Gets the groups of a user, memoized for the current request then cached process-wide.
+     * Failed lookups are never cached.
+     */
     public List<UserGroupDTO> getUserGroups(String sub) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        String requestAttributeName = USER_GROUPS_REQUEST_ATTRIBUTE_PREFIX + sub;
+        if (requestAttributes != null && requestAttributes.getAttribute(requestAttributeName, RequestAttributes.SCOPE_REQUEST) instanceof List<?> groups) {
+            @SuppressWarnings("unchecked")
+            List<UserGroupDTO> memoizedGroups = (List<UserGroupDTO>) groups;
+            return memoizedGroups;
+        }
+
+        List<UserGroupDTO> groups = userGroupsCache.getIfPresent(sub);
+        if (groups == null) {
+            Optional<List<UserGroupDTO>> fetchedGroups = fetchUserGroups(sub);
+            if (fetchedGroups.isEmpty()) {
+                return List.of();
+            }
+            groups = fetchedGroups.get();
+            userGroupsCache.put(sub, groups);
+        }
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(requestAttributeName, groups, RequestAttributes.SCOPE_REQUEST);
+        }
+        return groups;
+    }
+
+    public void invalidateUserGroups(String sub) {
+        userGroupsCache.invalidate(sub);
+    }
+
+    public void invalidateAllUserGroups() {
+        userGroupsCache.invalidateAll();
+    }
+
+    private Optional<List<UserGroupDTO>> fetchUserGroups(String sub) {
         String path = UriComponentsBuilder.fromPath(DELIMITER + USER_ADMIN_API_VERSION + GET_USER_GROUPS_URI)
                 .buildAndExpand(sub).toUriString();
         try {
-            return List.of(Objects.requireNonNull(restTemplate.getForEntity(userAdminServerBaseUri + path, UserGroupDTO[].class).getBody()));
+            return Optional.of(List.of(Objects.requireNonNull(restTemplate.getForEntity(userAdminServerBaseUri + path, UserGroupDTO[].class).getBody())));
         } catch (HttpStatusCodeException e) {
-            return List.of();
+            return Optional.empty();
         }
     }
 }
@@ -10,6 +10,7 @@ import com.google.common.collect.Iterables;
 import org.apache.commons.collections4.IterableUtils;
 import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
 import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.elasticsearch.ElementInfosOperation;
 import org.gridsuite.directory.server.services.DirectoryElementInfosService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,6 +23,8 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 
+import static org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepositoryCustom.LAST_MODIFICATION_DATE_FIELD;
+import static org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepositoryCustom.NAME_FIELD;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -79,6 +82,99 @@ class DirectoryElementInfosServiceTest {
         assertEquals(0, Iterables.size(directoryElementInfosRepository.findAll()));
     }
 
+    @Test
+    void testPartialUpdates() {
+        var element1Infos = createElements("elementName1");
+        var element2Infos = createElements("elementName2");
+        directoryElementInfosRepository.saveAll(List.of(element1Infos, element2Infos));
+
+        Instant newModificationDate = Instant.now().plusSeconds(60).truncatedTo(ChronoUnit.MILLIS);
+        UUID missingElementUuid = UUID.randomUUID();
+        directoryElementInfosRepository.bulk(List.of(
+                ElementInfosOperation.update(element1Infos.getId(), Map.of(NAME_FIELD, "newName")),
+                ElementInfosOperation.update(element2Infos.getId(), Map.of(LAST_MODIFICATION_DATE_FIELD, newModificationDate)),
+                ElementInfosOperation.update(missingElementUuid, Map.of(NAME_FIELD, "missing"))), true);
+
+        element1Infos.setName("newName");
+        element2Infos.setLastModificationDate(newModificationDate);
+        assertEquals(element1Infos, directoryElementInfosRepository.findById(element1Infos.getId()).orElseThrow());
+        assertEquals(element2Infos, directoryElementInfosRepository.findById(element2Infos.getId()).orElseThrow());
+        // a missing document is not created
+        assertTrue(directoryElementInfosRepository.findById(missingElementUuid).isEmpty());
+    }
+
+    @Test
+    void testMoveSubtree() {
+        UUID rootUuid = UUID.randomUUID();
+        UUID root2Uuid = UUID.randomUUID();
+        UUID dirUuid = UUID.randomUUID();
+        UUID subDirUuid = UUID.randomUUID();
+        var subDirInfos = createElements("subDir");
+        subDirInfos.setId(subDirUuid);
+        subDirInfos.setPathUuid(List.of(rootUuid, dirUuid));
+        subDirInfos.setPathName(List.of("root", "dir"));
+        var elementInfos = createElements("element");
+        elementInfos.setPathUuid(List.of(rootUuid, dirUuid, subDirUuid));
+        elementInfos.setPathName(List.of("root", "dir", "subDir"));
+        var otherElementInfos = createElements("otherElement");
+        otherElementInfos.setPathUuid(List.of(rootUuid));
+        otherElementInfos.setPathName(List.of("root"));
+        directoryElementInfosRepository.saveAll(List.of(subDirInfos, elementInfos, otherElementInfos));
+
+        // dir is moved from root to root2/dir2, applied twice as on a retry
+        UUID dir2Uuid = UUID.randomUUID();
+        ElementInfosOperation moveSubtree = ElementInfosOperation.moveSubtree(dirUuid, "dir", List.of(rootUuid), List.of(root2Uuid, dir2Uuid), List.of("root2", "dir2"));
+        directoryElementInfosRepository.bulk(List.of(moveSubtree), true);
+        directoryElementInfosRepository.bulk(List.of(moveSubtree), true);
+
+        subDirInfos.setPathUuid(List.of(root2Uuid, dir2Uuid, dirUuid));
+        subDirInfos.setPathName(List.of("root2", "dir2", "dir"));
+        elementInfos.setPathUuid(List.of(root2Uuid, dir2Uuid, dirUuid, subDirUuid));
+        elementInfos.setPathName(List.of("root2", "dir2", "dir", "subDir"));
+        assertEquals(subDirInfos, directoryElementInfosRepository.findById(subDirUuid).orElseThrow());
+        assertEquals(elementInfos, directoryElementInfosRepository.findById(elementInfos.getId()).orElseThrow());
+        assertEquals(otherElementInfos, directoryElementInfosRepository.findById(otherElementInfos.getId()).orElseThrow());
+    }
+
+    @Test
+    void testMoveSubtreeUnderItsOldParent() {
+        UUID rootUuid = UUID.randomUUID();
+        UUID dirUuid = UUID.randomUUID();
+        var elementInfos = createElements("element");
+        elementInfos.setPathUuid(List.of(rootUuid, dirUuid));
+        elementInfos.setPathName(List.of("root", "dir"));
+        directoryElementInfosRepository.saveAll(List.of(elementInfos));
+
+        // dir is moved from root to root/dir2: the old prefix still matches the rewritten paths, applied twice as on a retry
+        UUID dir2Uuid = UUID.randomUUID();
+        ElementInfosOperation moveSubtree = ElementInfosOperation.moveSubtree(dirUuid, "dir", List.of(rootUuid), List.of(rootUuid, dir2Uuid), List.of("root", "dir2"));
+        directoryElementInfosRepository.bulk(List.of(moveSubtree), true);
+        directoryElementInfosRepository.bulk(List.of(moveSubtree), true);
+
+        elementInfos.setPathUuid(List.of(rootUuid, dir2Uuid, dirUuid));
+        elementInfos.setPathName(List.of("root", "dir2", "dir"));
+        assertEquals(elementInfos, directoryElementInfosRepository.findById(elementInfos.getId()).orElseThrow());
+    }
+
+    @Test
+    void testRenameSubtree() {
+        UUID rootUuid = UUID.randomUUID();
+        UUID dirUuid = UUID.randomUUID();
+        UUID subDirUuid = UUID.randomUUID();
+        var elementInfos = createElements("element");
+        elementInfos.setPathUuid(List.of(rootUuid, dirUuid, subDirUuid));
+        elementInfos.setPathName(List.of("root", "dir", "subDir"));
+        directoryElementInfosRepository.saveAll(List.of(elementInfos));
+
+        // dir is renamed, its ancestors are unchanged, applied twice as on a retry
+        ElementInfosOperation renameSubtree = ElementInfosOperation.moveSubtree(dirUuid, "renamedDir", List.of(rootUuid), List.of(rootUuid), List.of("root"));
+        directoryElementInfosRepository.bulk(List.of(renameSubtree), true);
+        directoryElementInfosRepository.bulk(List.of(renameSubtree), true);
+
+        elementInfos.setPathName(List.of("root", "renamedDir", "subDir"));
+        assertEquals(elementInfos, directoryElementInfosRepository.findById(elementInfos.getId()).orElseThrow());
+    }
+
     @Test
     void searchElementInfos() {
         var directoryInfos = DirectoryElementInfos.builder().id(UUID.randomUUID()).name("aDirectory").type(DIRECTORY).owner("admin").parentId(UUID.randomUUID()).subdirectoriesCount(
@@ -8,6 +8,7 @@ package org.gridsuite.directory.server;
 
 import org.gridsuite.directory.server.repository.DirectoryElementEntity;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.ElementClosureRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -29,6 +30,9 @@ class DirectoryElementRepositoryTest {
     @Autowired
     DirectoryElementRepository directoryElementRepository;
 
+    @Autowired
+    ElementClosureRepository elementClosureRepository;
+
     @Test
     void findAllByIdInAndParentIdAndTypeNot() {
         DirectoryElementEntity parentDirectory = directoryElementRepository.save(
@@ -53,6 +57,25 @@ class DirectoryElementRepositoryTest {
                 DirectoryElementEntity::getId).toList(), parentDirectoryUuid, DIRECTORY));
     }
 
+    @Test
+    void testNameConflicts() {
+        UUID parentDirectoryUuid = directoryElementRepository.save(createRootElement("root", DIRECTORY, "user1")).getId();
+        directoryElementRepository.saveAll(List.of(
+            createElement(parentDirectoryUuid, "elementName1", TYPE_01, "user1"),
+            createElement(parentDirectoryUuid, "elementName2", TYPE_02, "user1"),
+            createElement(UUID.randomUUID(), "elementName2", TYPE_01, "user1")
+        ));
+
+        assertThat(directoryElementRepository.existsByParentIdAndNameAndType(parentDirectoryUuid, "elementName1", TYPE_01)).isTrue();
+        assertThat(directoryElementRepository.existsByParentIdAndNameAndType(parentDirectoryUuid, "elementName1", TYPE_02)).isFalse();
+        assertThat(directoryElementRepository.existsByParentIdAndNameAndType(parentDirectoryUuid, "elementName2", TYPE_01)).isFalse();
+
+        // the candidates have one of the names and one of the types
+        assertThat(directoryElementRepository.findNamesAndTypes(parentDirectoryUuid, List.of("elementName1", "elementName2", "elementName3"), List.of(TYPE_01, TYPE_02)))
+            .extracting(DirectoryElementRepository.NamedElement::getName, DirectoryElementRepository.NamedElement::getType)
+            .containsExactlyInAnyOrder(tuple("elementName1", TYPE_01), tuple("elementName2", TYPE_02));
+    }
+
     @Test
     void testCountCasesByUser() {
         //TODO: the specific types such as study and filter... are kept on purpose
@@ -86,4 +109,75 @@ class DirectoryElementRepositoryTest {
         assertThat(expectedResult).isEqualTo(7);
         assertThat(directoryElementRepository.getCasesCountByOwner(userId1)).isEqualTo(expectedResult);
     }
+
+    @Test
+    void testElementClosure() {
+        //    root1          root2
+        //      |
+        //     dir1
+        //      |
+        //     dir2
+        //      |
+        //    element
+        DirectoryElementEntity root1 = insertElement(createRootElement("root1", DIRECTORY, "user1"));
+        DirectoryElementEntity root2 = insertElement(createRootElement("root2", DIRECTORY, "user1"));
+        DirectoryElementEntity dir1 = insertElement(createElement(root1.getId(), "dir1", DIRECTORY, "user1"));
+        DirectoryElementEntity dir2 = insertElement(createElement(dir1.getId(), "dir2", DIRECTORY, "user1"));
+        DirectoryElementEntity element = insertElement(createElement(dir2.getId(), "element", TYPE_01, "user1"));
+
+        assertThat(directoryElementRepository.findElementHierarchy(element.getId())).extracting(DirectoryElementEntity::getId)
+            .containsExactly(root1.getId(), dir1.getId(), dir2.getId(), element.getId());
+        assertThat(directoryElementRepository.findAllDescendantsUuids(root1.getId()))
+            .containsExactlyInAnyOrder(dir1.getId(), dir2.getId(), element.getId());
+
+        // move dir2 (and its content) under root2
+        dir2.setParentId(root2.getId());
+        directoryElementRepository.save(dir2);
+        elementClosureRepository.detachSubtree(dir2.getId());
+        elementClosureRepository.attachSubtree(dir2.getId(), root2.getId());
+
+        assertThat(directoryElementRepository.findElementHierarchy(element.getId())).extracting(DirectoryElementEntity::getId)
+            .containsExactly(root2.getId(), dir2.getId(), element.getId());
+        assertThat(directoryElementRepository.findAllDescendantsUuids(root1.getId())).containsExactly(dir1.getId());
+        assertThat(directoryElementRepository.findAllDescendants(root2.getId())).extracting(DirectoryElementEntity::getId)
+            .containsExactlyInAnyOrder(dir2.getId(), element.getId());
+    }
+
+    @Test
+    void testSubtreePaths() {
+        DirectoryElementEntity root1 = createRootElement("root1", DIRECTORY, "user1");
+        root1.updatePaths(null);
+        DirectoryElementEntity root2 = createRootElement("root2", DIRECTORY, "user1");
+        root2.updatePaths(null);
+        DirectoryElementEntity dir = createElement(root1.getId(), "dir", DIRECTORY, "user1");
+        dir.updatePaths(root1);
+        DirectoryElementEntity element = createElement(dir.getId(), "element", TYPE_01, "user1");
+        element.updatePaths(dir);
+        directoryElementRepository.saveAll(List.of(root1, root2, dir, element));
+
+        assertThat(element.toDirectoryElementInfos().getPathUuid()).containsExactly(root1.getId(), dir.getId());
+        assertThat(element.toDirectoryElementInfos().getPathName()).containsExactly("root1", "dir");
+
+        // move dir under root2 then rewrite the paths of its content
+        String oldPath = dir.getPath();
+        String oldNamePath = dir.getNamePath();
+        dir.setParentId(root2.getId());
+        dir.updatePaths(root2);
+        directoryElementRepository.save(dir);
+        directoryElementRepository.updateSubtreePaths(oldPath + "/%", oldPath.length(), dir.getPath(), oldNamePath.length(), dir.getNamePath());
+
+        DirectoryElementEntity movedElement = directoryElementRepository.findById(element.getId()).orElseThrow();
+        assertThat(movedElement.getPath()).isEqualTo(root2.getId() + "/" + dir.getId() + "/" + element.getId());
+        assertThat(movedElement.toDirectoryElementInfos().getPathUuid()).containsExactly(root2.getId(), dir.getId());
+        assertThat(movedElement.toDirectoryElementInfos().getPathName()).containsExactly("root2", "dir");
+    }
+
+    private DirectoryElementEntity insertElement(DirectoryElementEntity elementEntity) {
+        DirectoryElementEntity savedElementEntity = directoryElementRepository.save(elementEntity);
+        elementClosureRepository.insertSelf(savedElementEntity.getId());
+        if (savedElementEntity.getParentId() != null) {
+            elementClosureRepository.insertAncestors(savedElementEntity.getId(), savedElementEntity.getParentId());
+        }
+        return savedElementEntity;
+    }
 }
@@ -10,12 +10,17 @@ import org.gridsuite.directory.server.dto.DirectoryInfos;
 import org.gridsuite.directory.server.dto.ElementAttributes;
 import org.gridsuite.directory.server.dto.RootDirectoryAttributes;
 import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.elasticsearch.ElementInfosOperation;
 import org.gridsuite.directory.server.error.DirectoryBusinessErrorCode;
 import org.gridsuite.directory.server.error.DirectoryException;
 import org.gridsuite.directory.server.repository.DirectoryElementEntity;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.PermissionEntity;
+import org.gridsuite.directory.server.repository.PermissionRepository;
 import org.gridsuite.directory.server.services.DirectoryRepositoryService;
+import org.gridsuite.directory.server.services.DirectoryTreeIndex;
 import org.gridsuite.directory.server.services.PermissionService;
+import org.gridsuite.directory.server.services.PermissionService.UserPrincipals;
 import org.gridsuite.directory.server.utils.DirectoryTestUtils;
 import org.gridsuite.directory.server.utils.elasticsearch.DisableElasticsearch;
 import org.junit.jupiter.api.BeforeEach;
@@ -23,16 +28,19 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import static org.gridsuite.directory.server.DirectoryService.DIRECTORY;
-import static org.gridsuite.directory.server.DirectoryService.MAX_RETRY;
 import static org.gridsuite.directory.server.error.DirectoryBusinessErrorCode.*;
+import static org.gridsuite.directory.server.services.PermissionService.ALL_USERS;
 import static org.gridsuite.directory.server.utils.DirectoryTestUtils.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -67,9 +75,17 @@ class DirectoryServiceTest {
     @MockitoBean
     PermissionService permissionService;
 
+    @Autowired
+    DirectoryTreeIndex directoryTreeIndex;
+
+    @Autowired
+    PermissionRepository permissionRepository;
+
     @BeforeEach
     public void setup() {
         directoryElementRepository.deleteAll();
+        permissionRepository.deleteAll();
+        directoryTreeIndex.rebuild();
     }
 
     @Test
@@ -113,12 +129,10 @@ class DirectoryServiceTest {
 
         // check elements are actually deleted
         verify(directoryElementRepository, times(1)).deleteAllById(elementExpectedToDeleteUuids);
-        verify(directoryElementInfosRepository, times(1)).deleteAllById(elementExpectedToDeleteUuids);
+        verify(directoryElementInfosRepository, times(1)).bulk(elementExpectedToDeleteUuids.stream().map(ElementInfosOperation::delete).toList(), true);
 
-        // notifications should be sent for each deleted element
-        verify(notificationService, times(1)).emitDeletedElement(element1.getId(), "user1");
-        verify(notificationService, times(1)).emitDeletedElement(element2.getId(), "user1");
-        verify(notificationService, times(1)).emitDeletedElement(element0.getId(), "user1");
+        // a single notification should be sent for all the deleted elements
+        verify(notificationService, times(1)).emitDeletedElements(elementExpectedToDeleteUuids, "user1");
         // notification for updated directory
         verify(notificationService, times(1)).emitDirectoryChanged(List.of(new DirectoryInfos(parentDirectoryUuid, true)), null, "user1", null, false, NotificationType.UPDATE_DIRECTORY);
         verifyNoMoreInteractions(notificationService);
@@ -150,13 +164,14 @@ class DirectoryServiceTest {
         UUID root2Uuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root2", "user1", null, null, null, null), "user1").getElementUuid();
         UUID element2Uuid = directoryService.createElement(elementAttributes, root2Uuid, "User1", false).getElementUuid();
 
-        // Duplicate an element in the new root directory with new name generation throw an exception if all retries fail
-        InOrder inOrder = inOrder(directoryService);
+        // Duplicate an element in the new root directory: the name is generated once, the directory being locked, without retry
+        InOrder inOrder = inOrder(directoryRepositoryService, directoryService);
         when(directoryService.getDuplicateNameCandidate(root2Uuid, elementAttributes.getElementName(), elementAttributes.getType(), "User1")).thenReturn(elementAttributes.getElementName());
         directoryException = assertThrows(DirectoryException.class, () -> directoryService.duplicateElement(element2Uuid, root2Uuid, root2Uuid, "User1"));
         assertEquals(DIRECTORY_ELEMENT_NAME_CONFLICT, directoryException.getBusinessErrorCode());
         assertEquals(DirectoryException.createElementNameAlreadyExists(elementAttributes.getElementName()).getMessage(), directoryException.getMessage());
-        inOrder.verify(directoryService, calls(MAX_RETRY)).getDuplicateNameCandidate(root2Uuid, elementAttributes.getElementName(), elementAttributes.getType(), "User1");
+        inOrder.verify(directoryRepositoryService).lockDirectory(root2Uuid);
+        inOrder.verify(directoryService, times(1)).getDuplicateNameCandidate(root2Uuid, elementAttributes.getElementName(), elementAttributes.getType(), "User1");
     }
 
     @Test
@@ -214,6 +229,9 @@ class DirectoryServiceTest {
         directoryService.moveElementsDirectory(List.of(dirUuid), root2Uuid, "user1");
         verify(notificationService, times(1)).emitDirectoryChanged(List.of(new DirectoryInfos(rootUuid, false), new DirectoryInfos(root2Uuid, true)),
             List.of("dir"), "user1", null, true, NotificationType.UPDATE_DIRECTORY);
+        // the descendants documents are not reloaded, their paths are rewritten by a single operation
+        verify(directoryElementInfosRepository, times(1)).bulk(argThat(operations ->
+            operations.contains(ElementInfosOperation.moveSubtree(dirUuid, "dir", List.of(rootUuid), List.of(root2Uuid), List.of("root2")))), eq(true));
         Optional<DirectoryElementEntity> dirEntity = directoryElementRepository.findById(dirUuid);
         assertTrue(dirEntity.isPresent());
         assertEquals(root2Uuid, dirEntity.get().getParentId());
@@ -224,6 +242,25 @@ class DirectoryServiceTest {
         assertEquals(DIRECTORY_MOVE_IN_DESCENDANT_NOT_ALLOWED, exception1.getBusinessErrorCode());
     }
 
+    @Test
+    void testDeleteDirectoryWithDescendants() {
+        UUID rootUuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1").getElementUuid();
+        UUID dirUuid = directoryService.createElement(toElementAttributes(null, "dir", DIRECTORY, "user1"), rootUuid, "user1", false).getElementUuid();
+        UUID subDirUuid = directoryService.createElement(toElementAttributes(null, "subDir", DIRECTORY, "user1"), dirUuid, "user1", false).getElementUuid();
+        UUID elementUuid = directoryService.createElement(toElementAttributes(null, "element", TYPE_01, "user1"), subDirUuid, "user1", false).getElementUuid();
+
+        directoryService.deleteElement(dirUuid, "user1");
+
+        // the whole subtree is deleted with bulk statements instead of one deletion per element
+        verify(directoryElementRepository, times(1)).deleteAllById(argThat((List<UUID> uuids) -> uuids.size() == 3 && uuids.containsAll(List.of(dirUuid, subDirUuid, elementUuid))));
+        verify(directoryElementRepository, never()).deleteById(any());
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(ElementInfosOperation.deleteSubtree(dirUuid)), true);
+        verify(permissionService, times(1)).deleteAllPermissionsForElements(argThat((List<UUID> uuids) -> uuids.size() == 3));
+        verify(notificationService, times(1)).emitDeletedElements(argThat((List<UUID> uuids) -> uuids.size() == 3), eq("user1"));
+
+        assertEquals(List.of(rootUuid), directoryElementRepository.findAll().stream().map(DirectoryElementEntity::getId).toList());
+    }
+
     @Test
     void testMoveInNotExistingDirectory() {
         ElementAttributes rootAttributes = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1");
@@ -237,6 +274,21 @@ class DirectoryServiceTest {
         assertEquals(DirectoryException.createElementNotFound(DIRECTORY, randomUuid).getMessage(), exception3.getMessage());
     }
 
+    @Test
+    void testMoveInDirectoryDeletedByAnotherInstance() {
+        UUID rootUuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1").getElementUuid();
+        UUID elementUuid = directoryService.createElement(toElementAttributes(null, "element1", "TYPE1", "user1"), rootUuid, "user1", false).getElementUuid();
+        // still in the directories tree index of this instance
+        DirectoryElementEntity deletedDirectory = createElement(rootUuid, "dir", DIRECTORY, "user1");
+        directoryTreeIndex.putDirectory(deletedDirectory);
+        UUID deletedDirectoryUuid = deletedDirectory.getId();
+        assertTrue(directoryTreeIndex.isDirectory(deletedDirectoryUuid));
+
+        List<UUID> list = List.of(elementUuid); // Just for Sonar issue (assertThrows)
+        DirectoryException exception = assertThrows(DirectoryException.class, () -> directoryService.moveElementsDirectory(list, deletedDirectoryUuid, "user1"));
+        assertEquals(DirectoryException.createElementNotFound(DIRECTORY, deletedDirectoryUuid).getMessage(), exception.getMessage());
+    }
+
     @Test
     void testMoveInNotDirectory() {
         ElementAttributes rootAttributes = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1");
@@ -252,6 +304,115 @@ class DirectoryServiceTest {
         assertEquals(DIRECTORY_NOT_DIRECTORY, exception2.getBusinessErrorCode());
     }
 
+    @Test
+    void testMoveElementsTogether() {
+        UUID rootUuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1").getElementUuid();
+        UUID root2Uuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root2", "user1", null, null, null, null), "user1").getElementUuid();
+        UUID dirUuid = directoryService.createElement(toElementAttributes(null, "dir", DIRECTORY, "user1"), rootUuid, "user1", false).getElementUuid();
+        UUID elementUuid = directoryService.createElement(toElementAttributes(null, "element", TYPE_01, "user1"), dirUuid, "user1", false).getElementUuid();
+        UUID leafUuid1 = directoryService.createElement(toElementAttributes(null, "leaf1", TYPE_01, "user1"), rootUuid, "user1", false).getElementUuid();
+        UUID leafUuid2 = directoryService.createElement(toElementAttributes(null, "leaf2", TYPE_01, "user1"), dirUuid, "user1", false).getElementUuid();
+        UUID sameNameLeafUuid = directoryService.createElement(toElementAttributes(null, "leaf1", TYPE_01, "user1"), dirUuid, "user1", false).getElementUuid();
+
+        // two moved elements with the same name and type
+        List<UUID> conflictingList = List.of(leafUuid1, sameNameLeafUuid); // Just for Sonar issue (assertThrows)
+        DirectoryException exception = assertThrows(DirectoryException.class, () -> directoryService.moveElementsDirectory(conflictingList, root2Uuid, "user1"));
+        assertEquals(DIRECTORY_ELEMENT_NAME_CONFLICT, exception.getBusinessErrorCode());
+
+        // a directory moved with one of its children
+        reset(directoryElementRepository);
+        directoryService.moveElementsDirectory(List.of(leafUuid1, dirUuid, leafUuid2), root2Uuid, "user1");
+        verify(directoryElementRepository, times(1)).findAllByIdIn(List.of(leafUuid1, dirUuid, leafUuid2));
+        verify(directoryElementRepository, times(1)).updateLeavesParent(List.of(leafUuid1, leafUuid2), root2Uuid, root2Uuid + "/", "root2" + DirectoryElementEntity.NAME_PATH_SEPARATOR);
+
+        DirectoryElementEntity leaf2 = directoryElementRepository.findById(leafUuid2).orElseThrow();
+        assertEquals(root2Uuid, leaf2.getParentId());
+        assertEquals(List.of(root2Uuid), leaf2.getAncestorsUuids());
+        assertEquals(List.of("root2"), leaf2.getAncestorsNames());
+        assertEquals(List.of(root2Uuid, dirUuid), directoryElementRepository.findById(elementUuid).orElseThrow().getAncestorsUuids());
+        assertEquals(List.of(root2Uuid, dirUuid), directoryElementRepository.findById(sameNameLeafUuid).orElseThrow().getAncestorsUuids());
+        assertEquals(root2Uuid, directoryElementRepository.findById(leafUuid1).orElseThrow().getParentId());
+        assertEquals(Set.of(leafUuid2, root2Uuid), Set.copyOf(directoryElementRepository.findAllAncestorsUuids(leafUuid2)));
+        assertEquals(Set.of(elementUuid, dirUuid, root2Uuid), Set.copyOf(directoryElementRepository.findAllAncestorsUuids(elementUuid)));
+    }
+
+    @Test
+    void testRenameDirectory() {
+        UUID rootUuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1").getElementUuid();
+        UUID dirUuid = directoryService.createElement(toElementAttributes(null, "dir", DIRECTORY, "user1"), rootUuid, "user1", false).getElementUuid();
+        UUID subDirUuid = directoryService.createElement(toElementAttributes(null, "subDir", DIRECTORY, "user1"), dirUuid, "user1", false).getElementUuid();
+        UUID elementUuid = directoryService.createElement(toElementAttributes(null, "element", TYPE_01, "user1"), subDirUuid, "user1", false).getElementUuid();
+
+        directoryService.updateElement(dirUuid, ElementAttributes.builder().elementName("renamedDir").build(), "user1");
+
+        assertEquals(List.of("root", "renamedDir"), directoryElementRepository.findById(subDirUuid).orElseThrow().getAncestorsNames());
+        assertEquals(List.of("root", "renamedDir", "subDir"), directoryElementRepository.findById(elementUuid).orElseThrow().getAncestorsNames());
+        // the descendants documents get the new name in their paths
+        verify(directoryElementInfosRepository, times(1)).bulk(argThat(operations ->
+            operations.contains(ElementInfosOperation.moveSubtree(dirUuid, "renamedDir", List.of(rootUuid), List.of(rootUuid), List.of("root")))), eq(true));
+    }
+
+    @Test
+    void testMaxDepth() {
+        UUID rootUuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1").getElementUuid();
+        UUID deepestDirUuid = rootUuid;
+        for (int depth = 2; depth <= DirectoryElementEntity.MAX_DEPTH; depth++) {
+            deepestDirUuid = directoryService.createElement(toElementAttributes(null, "dir" + depth, DIRECTORY, "user1"), deepestDirUuid, "user1", false).getElementUuid();
+        }
+        UUID parentUuid = directoryElementRepository.findById(deepestDirUuid).orElseThrow().getParentId();
+
+        // an element cannot be created below the deepest level
+        UUID deepestUuid = deepestDirUuid; // Just for Sonar issue (assertThrows)
+        ElementAttributes elementAttributes = toElementAttributes(null, "element", TYPE_01, "user1");
+        DirectoryException exception = assertThrows(DirectoryException.class, () -> directoryService.createElement(elementAttributes, deepestUuid, "user1", false));
+        assertEquals(DIRECTORY_MAX_DEPTH_EXCEEDED, exception.getBusinessErrorCode());
+
+        // a leaf can be moved to the deepest level, but not a directory with children
+        UUID leafUuid = directoryService.createElement(toElementAttributes(null, "leaf", TYPE_01, "user1"), rootUuid, "user1", false).getElementUuid();
+        directoryService.moveElementsDirectory(List.of(leafUuid), parentUuid, "user1");
+        assertEquals(parentUuid, directoryElementRepository.findById(leafUuid).orElseThrow().getParentId());
+        UUID dirUuid = directoryService.createElement(toElementAttributes(null, "dir", DIRECTORY, "user1"), rootUuid, "user1", false).getElementUuid();
+        directoryService.createElement(toElementAttributes(null, "child", TYPE_01, "user1"), dirUuid, "user1", false);
+        List<UUID> list = List.of(dirUuid); // Just for Sonar issue (assertThrows)
+        exception = assertThrows(DirectoryException.class, () -> directoryService.moveElementsDirectory(list, parentUuid, "user1"));
+        assertEquals(DIRECTORY_MAX_DEPTH_EXCEEDED, exception.getBusinessErrorCode());
+        assertEquals(rootUuid, directoryElementRepository.findById(dirUuid).orElseThrow().getParentId());
+    }
+
+    @Test
+    void testRecursiveListingPrunesUnreadableDirectories() {
+        UUID rootUuid = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1").getElementUuid();
+        UUID dirUuid1 = directoryService.createElement(toElementAttributes(null, "dir1", DIRECTORY, "user1"), rootUuid, "user1", false).getElementUuid();
+        UUID dirUuid2 = directoryService.createElement(toElementAttributes(null, "dir2", DIRECTORY, "user1"), rootUuid, "user1", false).getElementUuid();
+        UUID subDirUuid1 = directoryService.createElement(toElementAttributes(null, "subDir1", DIRECTORY, "user1"), dirUuid1, "user1", false).getElementUuid();
+        UUID subDirUuid2 = directoryService.createElement(toElementAttributes(null, "subDir2", DIRECTORY, "user1"), dirUuid2, "user1", false).getElementUuid();
+        directoryService.createElement(toElementAttributes(null, "element0", TYPE_01, "user1"), rootUuid, "user1", false);
+        directoryService.createElement(toElementAttributes(null, "element1", TYPE_01, "user1"), dirUuid1, "user1", false);
+        directoryService.createElement(toElementAttributes(null, "element2", TYPE_02, "user1"), subDirUuid1, "user1", false);
+        directoryService.createElement(toElementAttributes(null, "element3", TYPE_01, "user1"), dirUuid2, "user1", false);
+        directoryService.createElement(toElementAttributes(null, "element4", TYPE_01, "user1"), subDirUuid2, "user1", false);
+
+        // dir2 is not readable, its readable sub-directory neither listed nor walked
+        when(permissionService.hasReadPermission(eq("user1"), argThat(directory -> directory.getId().equals(rootUuid)))).thenReturn(true);
+        when(permissionService.getUserPrincipals("user1")).thenReturn(new UserPrincipals(false, List.of("user1", ALL_USERS), List.of()));
+        permissionRepository.saveAll(List.of(
+            PermissionEntity.read(dirUuid1, "user1", ""),
+            PermissionEntity.read(subDirUuid1, ALL_USERS, ""),
+            PermissionEntity.read(subDirUuid2, "user1", "")));
+
+        reset(directoryElementRepository);
+        List<ElementAttributes> elements = directoryService.getDirectoryElements(rootUuid, List.of(), true, "user1");
+        assertEquals(Set.of("dir1", "subDir1", "element0", "element1", "element2"), elements.stream().map(ElementAttributes::getElementName).collect(Collectors.toSet()));
+        // one query per level
+        verify(directoryElementRepository, times(3)).findReadableChildrenWithReferences(anyCollection(), anyBoolean(), anyList(), anyBoolean(), anyList(), anyList());
+        verify(directoryElementRepository, never()).findReadableChildrenWithReferences(argThat(parentUuids -> parentUuids.contains(dirUuid2) || parentUuids.contains(subDirUuid2)),
+            anyBoolean(), anyList(), anyBoolean(), anyList(), anyList());
+
+        // the directories are walked but not listed
+        elements = directoryService.getDirectoryElements(rootUuid, List.of(TYPE_01), true, "user1");
+        assertEquals(Set.of("element0", "element1"), elements.stream().map(ElementAttributes::getElementName).collect(Collectors.toSet()));
+    }
+
     @Test
     void testCreateExistingElementNotification() {
         ElementAttributes rootAttributes = directoryService.createRootDirectory(new RootDirectoryAttributes("root", "user1", null, null, null, null), "user1");
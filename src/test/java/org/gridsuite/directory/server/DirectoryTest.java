@@ -21,6 +21,8 @@ import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 import org.apache.http.HttpHost;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RestClient;
 import org.gridsuite.directory.server.dto.DirectoryInfos;
 import org.gridsuite.directory.server.dto.ElementAttributes;
@@ -34,6 +36,7 @@ import org.gridsuite.directory.server.repository.DirectoryElementRepository;
 import org.gridsuite.directory.server.repository.PermissionId;
 import org.gridsuite.directory.server.repository.PermissionRepository;
 import org.gridsuite.directory.server.services.ConsumerService;
+import org.gridsuite.directory.server.services.DirectoryTreeIndex;
 import org.gridsuite.directory.server.services.UserAdminService;
 import org.gridsuite.directory.server.utils.DirectoryTestUtils;
 import org.gridsuite.directory.server.utils.MatcherJson;
@@ -59,6 +62,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.util.CollectionUtils;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -156,6 +160,9 @@ class DirectoryTest {
     @Autowired
     private PermissionRepository permissionRepository;
 
+    @Autowired
+    private DirectoryTreeIndex directoryTreeIndex;
+
     @MockitoSpyBean
     ConsumerService consumeService;
 
@@ -195,6 +202,7 @@ class DirectoryTest {
         directoryElementRepository.deleteAll();
         directoryElementInfosRepository.deleteAll();
         permissionRepository.deleteAll();
+        directoryTreeIndex.rebuild();
         SQLStatementCountValidator.reset();
     }
 
@@ -283,9 +291,8 @@ class DirectoryTest {
         SQLStatementCountValidator.reset();
         List<ElementAttributes> path = getPath(elementUUID, "Doe");
 
-        // There is only request with entity graph
-        // SQLStatementCountValidator ignore native queries
-        assertRequestsCount(0, 0, 0, 0);
+        // The whole path is read with a single join on the element closure
+        assertRequestsCount(1, 0, 0, 0);
 
         //Check if all element's parents are retrieved in the right order
         assertEquals(
@@ -318,8 +325,8 @@ class DirectoryTest {
         SQLStatementCountValidator.reset();
         List<ElementAttributes> path = getPath(elementUUID, "Doe");
 
-        //There is only recursive query and SQLStatementCountValidator ignore them
-        assertRequestsCount(0, 0, 0, 0);
+        // The whole path is read with a single join on the element closure
+        assertRequestsCount(1, 0, 0, 0);
 
         //Check if all element's parents are retrieved in the right order
         assertEquals(
@@ -367,8 +374,8 @@ class DirectoryTest {
         SQLStatementCountValidator.reset();
         List<ElementAttributes> path = getPath(rootDirUuid, "Doe");
 
-        //There is only recursive query and SQLStatementCountValidator ignore them
-        assertRequestsCount(0, 0, 0, 0);
+        // The whole path is read with a single join on the element closure
+        assertRequestsCount(1, 0, 0, 0);
 
         assertEquals(
                 path.stream()
@@ -521,6 +528,80 @@ class DirectoryTest {
         assertNbElementsInRepositories(4);
     }
 
+    @Test
+    void testGetDirectoryElementsPages() throws Exception {
+        UUID rootDirUuid = insertAndCheckRootDirectory("rootDir1", "Doe");
+        for (String name : List.of("element3", "element1", "element5", "element2", "element4")) {
+            insertAndCheckSubElementInRootDir(rootDirUuid, toElementAttributes(UUID.randomUUID(), name, TYPE_01, "Doe"));
+        }
+
+        // pages of 2 elements by name
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        int pagesCount = 0;
+        do {
+            MvcResult result = getDirectoryElementsPage(rootDirUuid, "NAME", cursor, 2, status().isOk());
+            objectMapper.readerForListOf(ElementAttributes.class).<List<ElementAttributes>>readValue(result.getResponse().getContentAsString())
+                .forEach(element -> names.add(element.getElementName()));
+            cursor = result.getResponse().getHeader(DirectoryController.NEXT_CURSOR_HEADER);
+            pagesCount++;
+        } while (cursor != null);
+        assertEquals(List.of("element1", "element2", "element3", "element4", "element5"), names);
+        assertEquals(3, pagesCount);
+
+        // the most recently modified first
+        MvcResult result = getDirectoryElementsPage(rootDirUuid, "LAST_MODIFICATION_DATE", null, 4, status().isOk());
+        List<ElementAttributes> firstPage = objectMapper.readerForListOf(ElementAttributes.class).readValue(result.getResponse().getContentAsString());
+        assertEquals(List.of("element4", "element2", "element5", "element1"), firstPage.stream().map(ElementAttributes::getElementName).toList());
+        String nameCursor = getDirectoryElementsPage(rootDirUuid, "NAME", null, 2, status().isOk()).getResponse().getHeader(DirectoryController.NEXT_CURSOR_HEADER);
+        String dateCursor = result.getResponse().getHeader(DirectoryController.NEXT_CURSOR_HEADER);
+        result = getDirectoryElementsPage(rootDirUuid, "LAST_MODIFICATION_DATE", dateCursor, 4, status().isOk());
+        List<ElementAttributes> lastPage = objectMapper.readerForListOf(ElementAttributes.class).readValue(result.getResponse().getContentAsString());
+        assertEquals(List.of("element3"), lastPage.stream().map(ElementAttributes::getElementName).toList());
+        assertNull(result.getResponse().getHeader(DirectoryController.NEXT_CURSOR_HEADER));
+
+        // a cursor of another sort, a forged cursor or an invalid size
+        getDirectoryElementsPage(rootDirUuid, "LAST_MODIFICATION_DATE", nameCursor, 2, status().isBadRequest());
+        getDirectoryElementsPage(rootDirUuid, "NAME", "forged", 2, status().isBadRequest());
+        getDirectoryElementsPage(rootDirUuid, "NAME", null, 0, status().isBadRequest());
+    }
+
+    @Test
+    void testGetDirectoryElementsPagesWithoutModificationDate() throws Exception {
+        UUID rootDirUuid = insertAndCheckRootDirectory("rootDir1", "Doe");
+        for (String name : List.of("element1", "element2", "element3")) {
+            insertAndCheckSubElementInRootDir(rootDirUuid, toElementAttributes(UUID.randomUUID(), name, TYPE_01, "Doe"));
+        }
+        // elements written before the modification dates were recorded
+        List<DirectoryElementEntity> elements = directoryElementRepository.findAllByParentId(rootDirUuid);
+        elements.stream().filter(element -> !element.getName().equals("element2")).forEach(element -> element.setLastModificationDate(null));
+        directoryElementRepository.saveAll(elements);
+
+        // the elements without date first, one page each
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        do {
+            MvcResult result = getDirectoryElementsPage(rootDirUuid, "LAST_MODIFICATION_DATE", cursor, 1, status().isOk());
+            objectMapper.readerForListOf(ElementAttributes.class).<List<ElementAttributes>>readValue(result.getResponse().getContentAsString())
+                .forEach(element -> names.add(element.getElementName()));
+            cursor = result.getResponse().getHeader(DirectoryController.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+        assertEquals(3, names.size());
+        assertEquals(Set.of("element1", "element3"), Set.copyOf(names.subList(0, 2)));
+        assertEquals("element2", names.get(2));
+    }
+
+    private MvcResult getDirectoryElementsPage(UUID directoryUuid, String sortBy, String cursor, int size, ResultMatcher resultMatcher) throws Exception {
+        MockHttpServletRequestBuilder request = get("/v1/directories/" + directoryUuid + "/elements")
+            .param("size", String.valueOf(size))
+            .param("sortBy", sortBy)
+            .header("userId", "Doe");
+        if (cursor != null) {
+            request.param("cursor", cursor);
+        }
+        return mockMvc.perform(request).andExpect(resultMatcher).andReturn();
+    }
+
     @Test
     void testMoveElementToNotDirectory() throws Exception {
         UUID rootDir20Uuid = insertAndCheckRootDirectory("rootDir20", "Doe");
@@ -1293,6 +1374,43 @@ class DirectoryTest {
         assertEquals(userMakingModification, updatedElement.getLastModifiedBy());
     }
 
+    @Test
+    void testBatchedElementUpdateNotifications() throws Exception {
+        ElementAttributes newRootDirectory = retrieveInsertAndCheckRootDirectory("newDir", "userId");
+        ElementAttributes subEltAttributes = toElementAttributes(UUID.randomUUID(), "subElementName", TYPE_01, "userId", "descr subElementName");
+        insertAndCheckSubElementInRootDir(newRootDirectory.getElementUuid(), subEltAttributes);
+
+        Instant modificationDate = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        String elementUuid = subEltAttributes.getElementUuid().toString();
+        // the latest modification of the batch is applied, whatever the order of the messages
+        consumeService.consumeElementUpdate(MessageBuilder.withPayload(List.of("", "", ""))
+            .setHeader(ConsumerService.HEADER_BATCHED_HEADERS, List.of(
+                Map.of(HEADER_ELEMENT_UUID, elementUuid, HEADER_MODIFIED_BY, "user2", HEADER_MODIFICATION_DATE, modificationDate.plusSeconds(2).toString()),
+                Map.of(HEADER_ELEMENT_UUID, elementUuid, HEADER_MODIFIED_BY, "user3", HEADER_MODIFICATION_DATE, modificationDate.plusSeconds(3).toString()),
+                Map.of(HEADER_ELEMENT_UUID, elementUuid, HEADER_MODIFIED_BY, "user1", HEADER_MODIFICATION_DATE, modificationDate.plusSeconds(1).toString())))
+            .build());
+        ElementAttributes updatedElement = getElement(subEltAttributes.getElementUuid());
+        assertEquals(modificationDate.plusSeconds(3), updatedElement.getLastModificationDate());
+        assertEquals("user3", updatedElement.getLastModifiedBy());
+
+        // an older modification is ignored
+        consumeService.consumeElementUpdate(MessageBuilder.withPayload("")
+            .setHeader(HEADER_MODIFIED_BY, "user4")
+            .setHeader(HEADER_MODIFICATION_DATE, modificationDate.toString())
+            .setHeader(HEADER_ELEMENT_UUID, elementUuid)
+            .build());
+        updatedElement = getElement(subEltAttributes.getElementUuid());
+        assertEquals(modificationDate.plusSeconds(3), updatedElement.getLastModificationDate());
+        assertEquals("user3", updatedElement.getLastModifiedBy());
+    }
+
+    private ElementAttributes getElement(UUID elementUuid) throws Exception {
+        MvcResult result = mockMvc.perform(get("/v1/elements/" + elementUuid))
+            .andExpectAll(status().isOk(), content().contentType(MediaType.APPLICATION_JSON))
+            .andReturn();
+        return objectMapper.readValue(result.getResponse().getContentAsString(), ElementAttributes.class);
+    }
+
     @Test
     void testStudyUpdateNotification() throws Exception {
         String userId = "userId";
@@ -1410,14 +1528,48 @@ class DirectoryTest {
         assertEquals(0, Long.parseLong(mvcResult.getResponse().getContentAsString()));
 
         // reindex
-        mockMvc.perform(post("/v1/supervision/elements/reindex"))
+        mvcResult = mockMvc.perform(post("/v1/supervision/elements/reindex"))
+            .andExpect(status().isOk())
+            .andReturn();
+        UUID reindexJobId = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), UUID.class);
+
+        mvcResult = mockMvc.perform(get("/v1/supervision/elements/reindex/jobs/{jobId}", reindexJobId))
             .andExpect(status().isOk())
             .andReturn();
+        JsonNode reindexJob = objectMapper.readTree(mvcResult.getResponse().getContentAsString());
+        assertEquals("SUCCEEDED", reindexJob.get("status").asText());
+        assertEquals(4, reindexJob.get("indexedCount").asLong());
+
+        // a succeeded job cannot be resumed
+        mockMvc.perform(post("/v1/supervision/elements/reindex/jobs/{jobId}/resume", reindexJobId))
+            .andExpect(status().isConflict());
 
         mvcResult = mockMvc.perform(get("/v1/supervision/elements/indexation-count"))
             .andExpect(status().isOk())
             .andReturn();
         assertEquals(4, Long.parseLong(mvcResult.getResponse().getContentAsString()));
+
+        // rebuild in a new index twice: the live index is first replaced by an alias, then the alias is moved
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/v1/supervision/elements/index/rebuild"))
+                .andExpect(status().isOk());
+
+            mvcResult = mockMvc.perform(get("/v1/supervision/elements/indexation-count"))
+                .andExpect(status().isOk())
+                .andReturn();
+            assertEquals(4, Long.parseLong(mvcResult.getResponse().getContentAsString()));
+            String aliases = EntityUtils.toString(restClient.performRequest(new Request("GET", "/_alias/directory-elements")).getEntity());
+            assertEquals(1, objectMapper.readTree(aliases).size());
+        }
+
+        // the rebuilt index behind the alias is replaced by an empty index
+        mockMvc.perform(post("/v1/supervision/elements/index"))
+                .andExpect(status().isOk());
+
+        mvcResult = mockMvc.perform(get("/v1/supervision/elements/indexation-count"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertEquals(0, Long.parseLong(mvcResult.getResponse().getContentAsString()));
     }
 
     private List<ElementAttributes> getPath(UUID elementUuid, String userId) throws Exception {
@@ -1695,6 +1847,21 @@ class DirectoryTest {
         List<ElementAttributes> result = objectMapper.readValue(response, new TypeReference<>() {
         });
         assertThat(expectedList).usingRecursiveComparison().ignoringFieldsOfTypes(Instant.class).ignoringCollectionOrder().isEqualTo(result);
+
+        // same content when streamed, one element per line
+        String streamedResponse = mockMvc.perform(get("/v1/directories/" + parentDirectoryUuid + "/elements" + recurs + elementTypes)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header("userId", userId)
+                .header(HEADER_USER_ROLES, userId.equals(ADMIN_USER) ? ADMIN_ROLE : NO_ADMIN_ROLE))
+                .andExpectAll(status().isOk(), content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        List<ElementAttributes> streamedResult = new ArrayList<>();
+        for (String line : streamedResponse.lines().toList()) {
+            streamedResult.add(objectMapper.readValue(line, ElementAttributes.class));
+        }
+        assertThat(expectedList).usingRecursiveComparison().ignoringFieldsOfTypes(Instant.class).ignoringCollectionOrder().isEqualTo(streamedResult);
     }
 
     private void checkElementNotFound(UUID elementUuid, String userId) throws Exception {
@@ -1724,13 +1891,14 @@ class DirectoryTest {
             assertEquals(UPDATE_TYPE_ELEMENT_DELETE, headers.get(HEADER_UPDATE_TYPE));
             assertEquals(elementUuidToBeDeleted, headers.get(HEADER_ELEMENT_UUID));
         } else {
-            //empty the queue of all delete element notif
-            for (int i = 0; i < numberOfElements; i++) {
-                message = output.receive(TIMEOUT, directoryUpdateDestination);
-                headers = message.getHeaders();
-                assertEquals(UPDATE_TYPE_ELEMENT_DELETE, headers.get(HEADER_UPDATE_TYPE));
-                assertEquals(userId, headers.get(HEADER_USER_ID));
-            }
+            // all the deleted elements are notified in a single message
+            message = output.receive(TIMEOUT, directoryUpdateDestination);
+            headers = message.getHeaders();
+            assertEquals(UPDATE_TYPE_ELEMENTS_DELETE, headers.get(HEADER_UPDATE_TYPE));
+            assertEquals(userId, headers.get(HEADER_USER_ID));
+            List<UUID> deletedElementsUuids = objectMapper.readValue(message.getPayload(), new TypeReference<>() { });
+            assertEquals(numberOfElements, deletedElementsUuids.size());
+            assertTrue(deletedElementsUuids.contains(elementUuidToBeDeleted));
         }
         // assert that the broker message has been sent a delete
         message = output.receive(TIMEOUT, directoryUpdateDestination);
@@ -2183,8 +2351,7 @@ class DirectoryTest {
         SQLStatementCountValidator.reset();
         checkDirectoryContent(uuidNewRootDirectory, USER_ID, List.of(MODIFICATION), true, List.of(leafModifAttributes, rootModifAttributes, subModifAttributes, subModifAttributes2));
 
-        // SQLStatementCountValidator ignore native queries
-        assertRequestsCount(9, 0, 0, 0);
+        assertRequestsCount(6, 0, 0, 0);
     }
 
     @Test
@@ -23,6 +23,7 @@ import org.gridsuite.directory.server.error.DirectoryBusinessErrorCode;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
 import org.gridsuite.directory.server.repository.PermissionEntity;
 import org.gridsuite.directory.server.repository.PermissionRepository;
+import org.gridsuite.directory.server.services.DirectoryTreeIndex;
 import org.gridsuite.directory.server.services.UserAdminService;
 import org.gridsuite.directory.server.utils.MatcherJson;
 import org.gridsuite.directory.server.utils.elasticsearch.DisableElasticsearch;
@@ -85,6 +86,9 @@ class PermissionServiceTest {
     @Autowired
     private PermissionRepository permissionRepository;
 
+    @Autowired
+    private DirectoryTreeIndex directoryTreeIndex;
+
     @Autowired
     private UserAdminService userAdminService;
 
@@ -175,6 +179,7 @@ class PermissionServiceTest {
     private void cleanDatabase() {
         directoryElementRepository.deleteAll();
         permissionRepository.deleteAll();
+        directoryTreeIndex.rebuild();
     }
 
     @Test
@@ -6,32 +6,45 @@
  */
 package org.gridsuite.directory.server;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.gridsuite.directory.server.dto.ElementAttributes;
+import org.gridsuite.directory.server.dto.ReindexJobInfos;
 import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
 import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.elasticsearch.ElementInfosOperation;
 import org.gridsuite.directory.server.repository.DirectoryElementEntity;
 import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.ReindexJobEntity;
 import org.gridsuite.directory.server.services.SupervisionService;
+import org.gridsuite.directory.server.utils.DirectoryTestUtils;
 import org.gridsuite.directory.server.utils.elasticsearch.DisableElasticsearch;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexInformation;
 import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.gridsuite.directory.server.DirectoryService.DIRECTORY;
+import static org.gridsuite.directory.server.utils.DirectoryTestUtils.directoryNode;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -44,6 +57,9 @@ class SupervisionTest {
     @Autowired
     SupervisionService supervisionService;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @MockitoBean
     DirectoryElementRepository directoryElementRepository;
 
@@ -61,8 +77,22 @@ class SupervisionTest {
         List<UUID> uuidsToDelete = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
         supervisionService.deleteElementsByIds(uuidsToDelete);
 
+        verify(directoryElementRepository, times(1)).deleteAllReferencesByElementIdIn(uuidsToDelete);
         verify(directoryElementRepository, times(1)).deleteAllById(uuidsToDelete);
-        verify(directoryElementInfosRepository, times(1)).deleteAllById(uuidsToDelete);
+        verify(directoryElementInfosRepository, times(1)).bulk(uuidsToDelete.stream().map(ElementInfosOperation::delete).toList(), true);
+    }
+
+    @Test
+    void testRebuildDirectoryTreeIndex() {
+        UUID rootUuid = UUID.randomUUID();
+        when(directoryElementRepository.findAllDirectoryNodes()).thenReturn(List.of(
+                directoryNode(rootUuid, null, "root"),
+                directoryNode(UUID.randomUUID(), rootUuid, "dir")));
+
+        supervisionService.rebuildDirectoryTreeIndex();
+        assertEquals(2, supervisionService.getDirectoryTreeIndexSize());
+
+        verify(directoryElementRepository, times(1)).findAllDirectoryNodes();
     }
 
     @Test
@@ -82,19 +112,61 @@ class SupervisionTest {
                 "userId", "description", Instant.now(), Instant.now(), "userId", List.of());
 
         List<DirectoryElementEntity> allElements = List.of(rootDir, dirEntity, subdirEntity, elementEntity);
-        when(directoryElementRepository.findAll()).thenReturn(allElements);
+        when(directoryElementRepository.findIndexedElements(any())).thenReturn(allElements.stream().map(DirectoryTestUtils::indexedElement).toList());
+        when(directoryElementRepository.count()).thenReturn((long) allElements.size());
+        when(elasticsearchOperations.getIndexCoordinatesFor(DirectoryElementInfos.class)).thenReturn(IndexCoordinates.of("directory-elements"));
+        when(elasticsearchOperations.indexOps(DirectoryElementInfos.class)).thenReturn(indexOperations);
+
+        UUID jobId = supervisionService.reindexElements();
 
-        supervisionService.reindexElements();
+        ReindexJobInfos job = supervisionService.getReindexJob(jobId);
+        assertEquals(ReindexJobEntity.Status.SUCCEEDED, job.status());
+        assertEquals(4, job.totalCount());
+        assertEquals(4, job.indexedCount());
+        assertEquals(elementEntity.getId(), job.lastElementId());
 
-        List<DirectoryElementEntity> elementPath = List.of(); // No need path for tests
-        verify(directoryElementRepository, times(1)).findAll();
-        verify(directoryElementInfosRepository, times(1)).saveAll(allElements.stream().map(e -> e.toDirectoryElementInfos(elementPath)).toList());
-        verify(directoryElementRepository, times(2)).findElementHierarchy(any(UUID.class));
+        // paths are read from the elements themselves, without any further query, the last page being incomplete
+        verify(directoryElementRepository, times(1)).count();
+        verify(directoryElementRepository, times(1)).findIndexedElements(any());
+        verify(directoryElementRepository, never()).findIndexedElementsAfter(any(), any());
+        verify(directoryElementInfosRepository, times(1)).bulk(allElements.stream().map(element -> ElementInfosOperation.index(element.toDirectoryElementInfos())).toList(), false);
+        verify(elasticsearchOperations, times(1)).getIndexCoordinatesFor(DirectoryElementInfos.class);
+        verify(elasticsearchOperations, times(1)).indexOps(DirectoryElementInfos.class);
+        verify(indexOperations, times(1)).refresh();
+    }
+
+    @Test
+    void testGetUnknownReindexJob() {
+        UUID jobId = UUID.randomUUID();
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> supervisionService.getReindexJob(jobId));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+    }
+
+    // indexes matching the live index name followed by a suffix, the indexes of the REBUILD jobs
+    private IndexOperations mockRebuiltIndexes(String... rebuiltIndexNames) {
+        IndexOperations rebuiltIndexOperations = mock(IndexOperations.class);
+        List<IndexInformation> rebuiltIndexes = Stream.of(rebuiltIndexNames).map(name -> {
+            IndexInformation indexInformation = mock(IndexInformation.class);
+            when(indexInformation.getName()).thenReturn(name);
+            return indexInformation;
+        }).toList();
+        when(elasticsearchOperations.getIndexCoordinatesFor(DirectoryElementInfos.class)).thenReturn(IndexCoordinates.of("directory-elements"));
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class))).thenReturn(rebuiltIndexOperations);
+        when(rebuiltIndexOperations.getInformation()).thenReturn(rebuiltIndexes);
+        return rebuiltIndexOperations;
+    }
+
+    private void verifyRebuiltIndexesRead() {
+        verify(elasticsearchOperations, times(1)).getIndexCoordinatesFor(DirectoryElementInfos.class);
+        verify(elasticsearchOperations, times(1)).indexOps(argThat((IndexCoordinates coordinates) ->
+            List.of(coordinates.getIndexNames()).equals(List.of("directory-elements-*"))));
     }
 
     @Test
     void testRecreateIndexThrowsExceptionWhenDeleteFails() {
+        mockRebuiltIndexes();
         when(elasticsearchOperations.indexOps(DirectoryElementInfos.class)).thenReturn(indexOperations);
+        when(indexOperations.exists()).thenReturn(true);
         when(indexOperations.delete()).thenReturn(false);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
@@ -103,14 +175,18 @@ class SupervisionTest {
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exception.getStatusCode());
         assertEquals("Failed to delete elements ElasticSearch index", exception.getReason());
+        verifyRebuiltIndexesRead();
         verify(elasticsearchOperations, times(1)).indexOps(DirectoryElementInfos.class);
+        verify(indexOperations, times(1)).exists();
         verify(indexOperations, times(1)).delete();
         verify(indexOperations, never()).createWithMapping();
     }
 
     @Test
     void testRecreateIndexThrowsExceptionWhenCreateFails() {
+        mockRebuiltIndexes();
         when(elasticsearchOperations.indexOps(DirectoryElementInfos.class)).thenReturn(indexOperations);
+        when(indexOperations.exists()).thenReturn(true);
         when(indexOperations.delete()).thenReturn(true);
         when(indexOperations.createWithMapping()).thenReturn(false);
 
@@ -120,24 +196,50 @@ class SupervisionTest {
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exception.getStatusCode());
         assertEquals("Failed to create elements ElasticSearch index", exception.getReason());
+        verifyRebuiltIndexesRead();
         verify(elasticsearchOperations, times(1)).indexOps(DirectoryElementInfos.class);
+        verify(indexOperations, times(1)).exists();
         verify(indexOperations, times(1)).delete();
         verify(indexOperations, times(1)).createWithMapping();
     }
 
     @Test
     void recreateIndexSuccess() {
+        mockRebuiltIndexes();
         when(elasticsearchOperations.indexOps(DirectoryElementInfos.class)).thenReturn(indexOperations);
+        when(indexOperations.exists()).thenReturn(true);
         when(indexOperations.delete()).thenReturn(true);
         when(indexOperations.createWithMapping()).thenReturn(true);
 
         supervisionService.recreateIndex();
 
+        verifyRebuiltIndexesRead();
         verify(elasticsearchOperations, times(1)).indexOps(DirectoryElementInfos.class);
+        verify(indexOperations, times(1)).exists();
         verify(indexOperations, times(1)).delete();
         verify(indexOperations, times(1)).createWithMapping();
     }
 
+    @Test
+    void testRecreateIndexAfterRebuild() {
+        // the live index name is an alias of the rebuilt index, another one being left by an abandoned job
+        IndexOperations rebuiltIndexOperations = mockRebuiltIndexes("directory-elements-20261017080000000", "directory-elements-20261017090000000");
+        when(rebuiltIndexOperations.delete()).thenReturn(true);
+        when(elasticsearchOperations.indexOps(DirectoryElementInfos.class)).thenReturn(indexOperations);
+        when(indexOperations.createWithMapping()).thenReturn(true);
+
+        supervisionService.recreateIndex();
+
+        verifyRebuiltIndexesRead();
+        verify(elasticsearchOperations, times(1)).indexOps(argThat((IndexCoordinates coordinates) ->
+            List.of(coordinates.getIndexNames()).equals(List.of("directory-elements-20261017080000000", "directory-elements-20261017090000000"))));
+        verify(rebuiltIndexOperations, times(1)).delete();
+        verify(elasticsearchOperations, times(1)).indexOps(DirectoryElementInfos.class);
+        verify(indexOperations, times(1)).exists();
+        verify(indexOperations, never()).delete();
+        verify(indexOperations, times(1)).createWithMapping();
+    }
+
     @Test
     void testGetElementsNotModifiedSince() {
         DirectoryElementEntity elementEntity = new DirectoryElementEntity(UUID.randomUUID(), null, "name", "STUDY", "userId", "description",
@@ -155,6 +257,31 @@ class SupervisionTest {
         assertThrows(ResponseStatusException.class, () -> supervisionService.getUnmodifiedElementsByType("STUDY", invalidDuration));
     }
 
+    @Test
+    void testWriteElementsNotModifiedSince() throws Exception {
+        DirectoryElementEntity elementEntity1 = new DirectoryElementEntity(UUID.randomUUID(), null, "name1", "STUDY", "userId", "description",
+                Instant.now().minus(400, ChronoUnit.DAYS), Instant.now().minus(400, ChronoUnit.DAYS), "userId", List.of());
+        DirectoryElementEntity elementEntity2 = new DirectoryElementEntity(UUID.randomUUID(), null, "name2", "STUDY", "userId", "description",
+                Instant.now().minus(500, ChronoUnit.DAYS), Instant.now().minus(500, ChronoUnit.DAYS), "userId", List.of());
+        AtomicBoolean closed = new AtomicBoolean(false);
+        when(directoryElementRepository.streamAllByTypeAndLastModificationDateBeforeOrderByLastModificationDateDesc(eq("STUDY"), any(Instant.class)))
+                .thenReturn(Stream.of(elementEntity1, elementEntity2).onClose(() -> closed.set(true)));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        supervisionService.writeUnmodifiedElementsByType("STUDY", Duration.ofDays(365), outputStream);
+
+        // one element per line, in the order of the stream, which is closed once read
+        List<String> lines = outputStream.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals(elementEntity1.getId(), objectMapper.readValue(lines.get(0), ElementAttributes.class).getElementUuid());
+        assertEquals(elementEntity2.getId(), objectMapper.readValue(lines.get(1), ElementAttributes.class).getElementUuid());
+        assertTrue(closed.get());
+        verify(directoryElementRepository, times(1)).streamAllByTypeAndLastModificationDateBeforeOrderByLastModificationDateDesc(eq("STUDY"), any(Instant.class));
+
+        var invalidDuration = Duration.ofDays(-365);
+        assertThrows(ResponseStatusException.class, () -> supervisionService.writeUnmodifiedElementsByType("STUDY", invalidDuration, outputStream));
+    }
+
     @AfterEach
     public void verifyNoMoreInteractionsMocks() {
         verifyNoMoreInteractions(directoryElementRepository);
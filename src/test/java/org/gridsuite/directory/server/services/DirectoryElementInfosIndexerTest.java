@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gridsuite.directory.server.RestTemplateConfig;
+import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.elasticsearch.ElementInfosOperation;
+import org.gridsuite.directory.server.error.DirectoryException;
+import org.gridsuite.directory.server.repository.ElementIndexingOutboxEntity;
+import org.gridsuite.directory.server.repository.ElementIndexingOutboxRepository;
+import org.gridsuite.directory.server.repository.ReindexJobEntity;
+import org.gridsuite.directory.server.repository.ReindexJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepositoryCustom.LAST_MODIFICATION_DATE_FIELD;
+import static org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepositoryCustom.NAME_FIELD;
+import static org.gridsuite.directory.server.error.DirectoryBusinessErrorCode.DIRECTORY_INDEXING_BACKLOG_FULL;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author agent <agent at local>
+ */
+@ExtendWith(MockitoExtension.class)
+class DirectoryElementInfosIndexerTest {
+
+    @Mock
+    private DirectoryElementInfosRepository directoryElementInfosRepository;
+
+    @Mock
+    private ElementIndexingOutboxRepository elementIndexingOutboxRepository;
+
+    @Mock
+    private ReindexJobRepository reindexJobRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    // content of the outbox table
+    private final List<ElementIndexingOutboxEntity> outbox = new ArrayList<>();
+
+    private final UUID elementUuid1 = UUID.randomUUID();
+    private final UUID elementUuid2 = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outbox.clear();
+        // the outbox operations are not all used by each test
+        lenient().when(elementIndexingOutboxRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<ElementIndexingOutboxEntity> entities = invocation.getArgument(0);
+            entities.forEach(entity -> {
+                entity.setId(outbox.isEmpty() ? 1L : outbox.get(outbox.size() - 1).getId() + 1);
+                outbox.add(entity);
+            });
+            return entities;
+        });
+        lenient().when(elementIndexingOutboxRepository.count()).thenAnswer(invocation -> (long) outbox.size());
+        lenient().when(elementIndexingOutboxRepository.findOldestForUpdate(any())).thenAnswer(invocation ->
+            List.copyOf(outbox.subList(0, Math.min(outbox.size(), invocation.<Pageable>getArgument(0).getPageSize()))));
+        lenient().doAnswer(invocation -> outbox.removeIf(entity -> invocation.<Collection<Long>>getArgument(0).contains(entity.getId())))
+            .when(elementIndexingOutboxRepository).deleteAllByIdIn(anyCollection());
+    }
+
+    private DirectoryElementInfosIndexer createIndexer(long maxBacklog) {
+        // synchronous, without backoff: each change flushes the whole outbox
+        return new DirectoryElementInfosIndexer(directoryElementInfosRepository, elementIndexingOutboxRepository, reindexJobRepository,
+            RestTemplateConfig.createObjectMapper(), transactionManager, meterRegistry, true, 500, 1000, maxBacklog, 0, 0, 0, 300000);
+    }
+
+    @Test
+    void testFailedBatchRetriedBeforeTheFollowingOperations() {
+        doThrow(new TransientDataAccessResourceException("unavailable")).doNothing()
+            .when(directoryElementInfosRepository).bulk(anyList(), anyBoolean());
+        DirectoryElementInfosIndexer indexer = createIndexer(100);
+
+        indexer.updateFields(Map.of(elementUuid1, Map.of(NAME_FIELD, "newName")));
+        assertEquals(1, indexer.getBacklog());
+        assertEquals(1, outbox.get(0).getAttempts());
+
+        indexer.delete(List.of(elementUuid1, elementUuid2));
+        assertEquals(0, indexer.getBacklog());
+        assertTrue(outbox.isEmpty());
+
+        ElementInfosOperation update = ElementInfosOperation.update(elementUuid1, Map.of(NAME_FIELD, "newName"));
+        InOrder inOrder = inOrder(directoryElementInfosRepository);
+        inOrder.verify(directoryElementInfosRepository).bulk(List.of(update), true);
+        inOrder.verify(directoryElementInfosRepository).bulk(List.of(update, ElementInfosOperation.delete(elementUuid1), ElementInfosOperation.delete(elementUuid2)), true);
+        assertEquals(3.0, meterRegistry.get("directory.elasticsearch.indexing.applied").counter().count());
+        assertEquals(1.0, meterRegistry.get("directory.elasticsearch.indexing.failed").counter().count());
+    }
+
+    @Test
+    void testOperationsKeptUntilApplied() {
+        doThrow(new TransientDataAccessResourceException("unavailable"))
+            .when(directoryElementInfosRepository).bulk(anyList(), anyBoolean());
+        DirectoryElementInfosIndexer indexer = createIndexer(100);
+
+        Instant lastModificationDate = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        indexer.updateFields(Map.of(elementUuid1, Map.of(LAST_MODIFICATION_DATE_FIELD, lastModificationDate)));
+        indexer.flush();
+        indexer.flush();
+        assertEquals(1, outbox.size());
+        assertEquals(3, outbox.get(0).getAttempts());
+
+        // read back from the outbox as it was written, after a restart as well
+        doNothing().when(directoryElementInfosRepository).bulk(anyList(), anyBoolean());
+        createIndexer(100).flush();
+        verify(directoryElementInfosRepository, times(4)).bulk(List.of(ElementInfosOperation.update(elementUuid1, Map.of(LAST_MODIFICATION_DATE_FIELD, lastModificationDate))), true);
+        assertTrue(outbox.isEmpty());
+    }
+
+    @Test
+    void testOperationsRefusedAboveTheMaxBacklog() {
+        doThrow(new TransientDataAccessResourceException("unavailable"))
+            .when(directoryElementInfosRepository).bulk(anyList(), anyBoolean());
+        DirectoryElementInfosIndexer indexer = createIndexer(2);
+
+        indexer.delete(List.of(elementUuid1));
+        indexer.deleteSubtree(elementUuid2);
+        List<UUID> uuids = List.of(elementUuid2); // Just for Sonar issue (assertThrows)
+        DirectoryException exception = assertThrows(DirectoryException.class, () -> indexer.delete(uuids));
+        assertEquals(DIRECTORY_INDEXING_BACKLOG_FULL, exception.getBusinessErrorCode());
+
+        assertEquals(2, outbox.size());
+        assertEquals(1.0, meterRegistry.get("directory.elasticsearch.indexing.rejected").counter().count());
+    }
+
+    @Test
+    void testOperationsSentToTheIndexOfTheRunningRebuildJob() {
+        // job started by another instance
+        ReindexJobEntity job = ReindexJobEntity.builder().type(ReindexJobEntity.Type.REBUILD).indexName("directory-elements-1").build();
+        when(reindexJobRepository.findFirstByTypeAndStatusAndUpdateDateAfter(eq(ReindexJobEntity.Type.REBUILD), eq(ReindexJobEntity.Status.RUNNING), any()))
+            .thenReturn(Optional.of(job)).thenReturn(Optional.empty());
+        DirectoryElementInfosIndexer indexer = createIndexer(100);
+
+        indexer.delete(List.of(elementUuid1));
+        indexer.delete(List.of(elementUuid2));
+
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(ElementInfosOperation.delete(elementUuid1)), true);
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(ElementInfosOperation.delete(elementUuid1)), true, "directory-elements-1");
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(ElementInfosOperation.delete(elementUuid2)), true);
+        verify(directoryElementInfosRepository, never()).bulk(eq(List.of(ElementInfosOperation.delete(elementUuid2))), anyBoolean(), anyString());
+    }
+
+    @Test
+    void testLiveAndShadowIndexesRetriedSeparately() {
+        ReindexJobEntity job = ReindexJobEntity.builder().type(ReindexJobEntity.Type.REBUILD).indexName("directory-elements-1").build();
+        when(reindexJobRepository.findFirstByTypeAndStatusAndUpdateDateAfter(eq(ReindexJobEntity.Type.REBUILD), eq(ReindexJobEntity.Status.RUNNING), any()))
+            .thenReturn(Optional.of(job));
+        doThrow(new TransientDataAccessResourceException("unavailable")).doNothing()
+            .when(directoryElementInfosRepository).bulk(anyList(), anyBoolean(), anyString());
+        DirectoryElementInfosIndexer indexer = createIndexer(100);
+
+        indexer.delete(List.of(elementUuid1));
+        assertTrue(outbox.get(0).isLiveApplied());
+
+        indexer.delete(List.of(elementUuid2));
+
+        // the first operation is not sent again to the live index
+        ElementInfosOperation delete1 = ElementInfosOperation.delete(elementUuid1);
+        ElementInfosOperation delete2 = ElementInfosOperation.delete(elementUuid2);
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(delete1), true);
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(delete2), true);
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(delete1), true, "directory-elements-1");
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(delete1, delete2), true, "directory-elements-1");
+        assertTrue(outbox.isEmpty());
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import org.gridsuite.directory.server.dto.elasticsearch.DirectoryElementInfos;
+import org.gridsuite.directory.server.elasticsearch.DirectoryElementInfosRepository;
+import org.gridsuite.directory.server.elasticsearch.ElementInfosOperation;
+import org.gridsuite.directory.server.repository.DirectoryElementEntity;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.gridsuite.directory.server.repository.ReindexJobEntity;
+import org.gridsuite.directory.server.repository.ReindexJobRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.gridsuite.directory.server.DirectoryService.DIRECTORY;
+import static org.gridsuite.directory.server.utils.DirectoryTestUtils.createElement;
+import static org.gridsuite.directory.server.utils.DirectoryTestUtils.createRootElement;
+import static org.gridsuite.directory.server.utils.DirectoryTestUtils.indexedElement;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author agent <agent at local>
+ */
+@ExtendWith(MockitoExtension.class)
+class DirectoryElementInfosReindexerTest {
+
+    @Mock
+    private DirectoryElementRepository directoryElementRepository;
+
+    @Mock
+    private DirectoryElementInfosRepository directoryElementInfosRepository;
+
+    @Mock
+    private ReindexJobRepository reindexJobRepository;
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    // the index and alias requests of a rebuild are not checked
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ElasticsearchClient elasticsearchClient;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    private static List<ElementInfosOperation> indexOperationsOf(DirectoryElementEntity... elements) {
+        return List.of(elements).stream().map(element -> ElementInfosOperation.index(element.toDirectoryElementInfos())).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SearchHitsIterator<DirectoryElementInfos> searchHitsOf(DirectoryElementInfos... documents) {
+        Iterator<DirectoryElementInfos> iterator = List.of(documents).iterator();
+        SearchHitsIterator<DirectoryElementInfos> hits = mock(SearchHitsIterator.class);
+        when(hits.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(hits.next()).thenAnswer(invocation -> {
+            SearchHit<DirectoryElementInfos> hit = mock(SearchHit.class);
+            when(hit.getContent()).thenReturn(iterator.next());
+            return hit;
+        });
+        return hits;
+    }
+
+    @Test
+    void testResumeFromTheLastCheckpoint() {
+        // pages of 2 elements, one bulk request in flight
+        DirectoryElementInfosReindexer reindexer = new DirectoryElementInfosReindexer(directoryElementRepository, directoryElementInfosRepository,
+            reindexJobRepository, elasticsearchOperations, elasticsearchClient, true, 2, 1, 0, 300000, 0);
+        DirectoryElementEntity root = createRootElement("root", DIRECTORY, "user");
+        DirectoryElementEntity dir = createElement(root.getId(), "dir", DIRECTORY, "user");
+        DirectoryElementEntity element = createElement(dir.getId(), "element", "TYPE", "user");
+        when(elasticsearchOperations.getIndexCoordinatesFor(DirectoryElementInfos.class)).thenReturn(IndexCoordinates.of("directory-elements"));
+        when(directoryElementRepository.count()).thenReturn(3L);
+        when(directoryElementRepository.findIndexedElements(any())).thenReturn(List.of(indexedElement(root), indexedElement(dir)));
+        when(directoryElementRepository.findIndexedElementsAfter(eq(dir.getId()), any())).thenReturn(List.of(indexedElement(element)));
+        when(reindexJobRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        doNothing().doThrow(new TransientDataAccessResourceException("unavailable"))
+            .when(directoryElementInfosRepository).bulk(anyList(), eq(false));
+
+        UUID jobId = reindexer.reindex();
+
+        ArgumentCaptor<ReindexJobEntity> jobCaptor = ArgumentCaptor.forClass(ReindexJobEntity.class);
+        verify(reindexJobRepository, atLeastOnce()).save(jobCaptor.capture());
+        ReindexJobEntity job = jobCaptor.getValue();
+        assertEquals(jobId, job.getId());
+        assertEquals(ReindexJobEntity.Status.FAILED, job.getStatus());
+        assertEquals(3, job.getTotalCount());
+        assertEquals(2, job.getIndexedCount());
+        assertEquals(dir.getId(), job.getLastElementId());
+
+        // the first page is not sent again
+        doNothing().when(directoryElementInfosRepository).bulk(anyList(), eq(false));
+        when(reindexJobRepository.findById(jobId)).thenReturn(Optional.of(job));
+        when(elasticsearchOperations.indexOps(DirectoryElementInfos.class)).thenReturn(indexOperations);
+
+        assertEquals(jobId, reindexer.resume(jobId));
+
+        assertEquals(ReindexJobEntity.Status.SUCCEEDED, job.getStatus());
+        assertEquals(3, job.getIndexedCount());
+        assertEquals(2, job.getRunStartCount());
+        assertEquals(element.getId(), job.getLastElementId());
+        assertNull(job.getError());
+        verify(directoryElementInfosRepository, times(1)).bulk(indexOperationsOf(root, dir), false);
+        verify(directoryElementInfosRepository, times(2)).bulk(indexOperationsOf(element), false);
+        verify(directoryElementRepository, times(1)).findIndexedElements(any());
+        verify(indexOperations, times(1)).refresh();
+    }
+
+    @Test
+    void testRebuildReconcilesTheDocumentsOfDeletedAndMovedElements() {
+        // pages of 2 elements, one bulk request in flight
+        DirectoryElementInfosReindexer reindexer = new DirectoryElementInfosReindexer(directoryElementRepository, directoryElementInfosRepository,
+            reindexJobRepository, elasticsearchOperations, elasticsearchClient, true, 2, 1, 0, 300000, 0);
+        DirectoryElementEntity root = createRootElement("root", DIRECTORY, "user");
+        DirectoryElementEntity dir = createElement(root.getId(), "dir", DIRECTORY, "user");
+        when(elasticsearchOperations.getIndexCoordinatesFor(DirectoryElementInfos.class)).thenReturn(IndexCoordinates.of("directory-elements"));
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class))).thenReturn(indexOperations);
+        when(directoryElementRepository.count()).thenReturn(2L);
+        when(directoryElementRepository.findIndexedElements(any())).thenReturn(List.of(indexedElement(root), indexedElement(dir)));
+        when(reindexJobRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        // written by the indexers during the copy: dir moved from another root before its copy, an element deleted after its copy
+        DirectoryElementInfos movedDirInfos = dir.toDirectoryElementInfos();
+        movedDirInfos.setPathUuid(List.of(UUID.randomUUID()));
+        movedDirInfos.setPathName(List.of("oldRoot"));
+        DirectoryElementInfos deletedElementInfos = createElement(dir.getId(), "element", "TYPE", "user").toDirectoryElementInfos();
+        SearchHitsIterator<DirectoryElementInfos> hits = searchHitsOf(root.toDirectoryElementInfos(), movedDirInfos, deletedElementInfos);
+        when(elasticsearchOperations.searchForStream(any(Query.class), eq(DirectoryElementInfos.class), any(IndexCoordinates.class))).thenReturn(hits);
+        when(directoryElementRepository.findIndexedElementsByIdIn(List.of(root.getId(), dir.getId()))).thenReturn(List.of(indexedElement(root), indexedElement(dir)));
+
+        UUID jobId = reindexer.rebuild();
+
+        ArgumentCaptor<ReindexJobEntity> jobCaptor = ArgumentCaptor.forClass(ReindexJobEntity.class);
+        verify(reindexJobRepository, atLeastOnce()).save(jobCaptor.capture());
+        ReindexJobEntity job = jobCaptor.getValue();
+        assertEquals(jobId, job.getId());
+        assertEquals(ReindexJobEntity.Status.SUCCEEDED, job.getStatus());
+        String indexName = job.getIndexName();
+        verify(directoryElementInfosRepository, times(1)).bulk(indexOperationsOf(dir), false, indexName);
+        verify(directoryElementInfosRepository, times(1)).bulk(List.of(ElementInfosOperation.delete(deletedElementInfos.getId())), false, indexName);
+        verify(hits, times(1)).close();
+    }
+
+    @Test
+    void testOnlyOneRunningJob() {
+        DirectoryElementInfosReindexer reindexer = new DirectoryElementInfosReindexer(directoryElementRepository, directoryElementInfosRepository,
+            reindexJobRepository, elasticsearchOperations, elasticsearchClient, true, 2, 1, 0, 300000, 0);
+        when(elasticsearchOperations.getIndexCoordinatesFor(DirectoryElementInfos.class)).thenReturn(IndexCoordinates.of("directory-elements"));
+        // running on another instance
+        when(reindexJobRepository.existsByStatusAndUpdateDateAfter(eq(ReindexJobEntity.Status.RUNNING), any())).thenReturn(true);
+
+        assertThrows(ResponseStatusException.class, reindexer::reindex);
+        verify(reindexJobRepository, never()).save(any());
+        verifyNoInteractions(directoryElementInfosRepository);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import org.gridsuite.directory.server.repository.DirectoryElementEntity;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.gridsuite.directory.server.DirectoryService.DIRECTORY;
+import static org.gridsuite.directory.server.utils.DirectoryTestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author agent <agent at local>
+ */
+@ExtendWith(MockitoExtension.class)
+class DirectoryTreeIndexTest {
+
+    @Mock
+    private DirectoryElementRepository directoryElementRepository;
+
+    private DirectoryTreeIndex directoryTreeIndex;
+
+    private final UUID rootUuid = UUID.randomUUID();
+    private final UUID dirUuid = UUID.randomUUID();
+    private final UUID subDirUuid = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        directoryTreeIndex = new DirectoryTreeIndex(directoryElementRepository, false);
+        when(directoryElementRepository.findAllDirectoryNodes()).thenReturn(List.of(
+                directoryNode(rootUuid, null, "root"),
+                directoryNode(dirUuid, rootUuid, "dir"),
+                directoryNode(subDirUuid, dirUuid, "subDir")));
+    }
+
+    @Test
+    void testLookups() {
+        // loaded on first use
+        assertEquals(3, directoryTreeIndex.size());
+        assertEquals(Optional.of(rootUuid), directoryTreeIndex.getDirectoryUuid("root", null));
+        assertEquals(Optional.of(subDirUuid), directoryTreeIndex.getDirectoryUuid("subDir", dirUuid));
+        assertTrue(directoryTreeIndex.getDirectoryUuid("subDir", rootUuid).isEmpty());
+        assertEquals(Optional.of(true), directoryTreeIndex.isRootDirectory(rootUuid));
+        assertEquals(Optional.of(false), directoryTreeIndex.isRootDirectory(dirUuid));
+        assertTrue(directoryTreeIndex.isRootDirectory(UUID.randomUUID()).isEmpty());
+        verify(directoryElementRepository, times(1)).findAllDirectoryNodes();
+    }
+
+    @Test
+    void testLocalWritesDuringRebuild() {
+        directoryTreeIndex.rebuild();
+        UUID newDirUuid = UUID.randomUUID();
+        DirectoryElementEntity newDir = createElement(rootUuid, "newDir", DIRECTORY, "user");
+        newDir.setId(newDirUuid);
+        // committed after the directories are read
+        when(directoryElementRepository.findAllDirectoryNodes()).thenAnswer(invocation -> {
+            directoryTreeIndex.putDirectory(newDir);
+            directoryTreeIndex.removeDirectories(List.of(subDirUuid));
+            return List.of(
+                directoryNode(rootUuid, null, "root"),
+                directoryNode(dirUuid, rootUuid, "dir"),
+                directoryNode(subDirUuid, dirUuid, "subDir"));
+        });
+
+        directoryTreeIndex.rebuild();
+
+        assertEquals(Optional.of(newDirUuid), directoryTreeIndex.getDirectoryUuid("newDir", rootUuid));
+        assertFalse(directoryTreeIndex.isDirectory(subDirUuid));
+        assertEquals(3, directoryTreeIndex.size());
+    }
+
+    @Test
+    void testLocalWrites() {
+        directoryTreeIndex.rebuild();
+
+        // rename
+        DirectoryElementEntity dir = createElement(rootUuid, "renamedDir", DIRECTORY, "user");
+        dir.setId(dirUuid);
+        directoryTreeIndex.putDirectory(dir);
+        assertTrue(directoryTreeIndex.getDirectoryUuid("dir", rootUuid).isEmpty());
+        assertEquals(Optional.of(dirUuid), directoryTreeIndex.getDirectoryUuid("renamedDir", rootUuid));
+
+        // the sub directories are removed with their parent
+        directoryTreeIndex.removeDirectories(List.of(dirUuid));
+        assertEquals(1, directoryTreeIndex.size());
+        assertFalse(directoryTreeIndex.isDirectory(subDirUuid));
+    }
+
+    @Test
+    void testRefresh() {
+        directoryTreeIndex.rebuild();
+
+        // subDir moved from dir to root, dir deleted by another instance
+        UUID otherRootUuid = UUID.randomUUID();
+        when(directoryElementRepository.findDirectoryNodesAndChildren(List.of(rootUuid, dirUuid, otherRootUuid))).thenReturn(List.of(
+                directoryNode(rootUuid, null, "root"),
+                directoryNode(subDirUuid, rootUuid, "subDir"),
+                directoryNode(otherRootUuid, null, "otherRoot")));
+        directoryTreeIndex.refresh(List.of(rootUuid, dirUuid, otherRootUuid));
+
+        assertEquals(3, directoryTreeIndex.size());
+        assertFalse(directoryTreeIndex.isDirectory(dirUuid));
+        assertEquals(Optional.of(subDirUuid), directoryTreeIndex.getDirectoryUuid("subDir", rootUuid));
+        assertEquals(Optional.of(otherRootUuid), directoryTreeIndex.getDirectoryUuid("otherRoot", null));
+    }
+}
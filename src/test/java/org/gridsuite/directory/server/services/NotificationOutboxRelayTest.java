@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gridsuite.directory.server.NotificationType;
+import org.gridsuite.directory.server.repository.NotificationOutboxEntity;
+import org.gridsuite.directory.server.repository.NotificationOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.gridsuite.directory.server.NotificationService.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author agent <agent at local>
+ */
+@ExtendWith(MockitoExtension.class)
+class NotificationOutboxRelayTest {
+
+    @Mock
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Mock
+    private StreamBridge directoryUpdatePublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Captor
+    private ArgumentCaptor<Message<?>> messageCaptor;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final UUID elementUuid1 = UUID.randomUUID();
+    private final UUID elementUuid2 = UUID.randomUUID();
+    private final UUID elementUuid3 = UUID.randomUUID();
+
+    private NotificationOutboxEntity notification1;
+    private NotificationOutboxEntity notification2;
+    private NotificationOutboxEntity notification3;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        notification1 = deletedElementNotification(1L, elementUuid1);
+        notification2 = deletedElementNotification(2L, elementUuid2);
+        notification3 = deletedElementNotification(3L, elementUuid3);
+    }
+
+    private NotificationOutboxRelay createRelay(int maxAttempts) {
+        return createRelay(maxAttempts, 0);
+    }
+
+    private NotificationOutboxRelay createRelay(int maxAttempts, long coalescingWindow) {
+        return new NotificationOutboxRelay(notificationOutboxRepository, directoryUpdatePublisher, new ObjectMapper(), transactionManager,
+            meterRegistry, true, 100, 5000, maxAttempts, 1000, 60000, coalescingWindow);
+    }
+
+    private static NotificationOutboxEntity deletedElementNotification(Long id, UUID elementUuid) {
+        return NotificationOutboxEntity.builder()
+            .id(id)
+            .creationDate(Instant.now())
+            .userId("user")
+            .elementUuid(elementUuid)
+            .updateType(UPDATE_TYPE_ELEMENT_DELETE)
+            .build();
+    }
+
+    private static NotificationOutboxEntity directoryUpdateNotification(Long id, Instant creationDate, String directoriesInfos, String elementNames) {
+        return NotificationOutboxEntity.builder()
+            .id(id)
+            .creationDate(creationDate)
+            .userId("user")
+            .directoriesInfos(directoriesInfos)
+            .elementNames(elementNames)
+            .isDirectoryMoving(false)
+            .notificationType(NotificationType.UPDATE_DIRECTORY.name())
+            .updateType(UPDATE_TYPE_DIRECTORIES)
+            .build();
+    }
+
+    private static boolean isDeletedElementMessage(Message<?> message, UUID elementUuid) {
+        return message != null && elementUuid.equals(message.getHeaders().get(HEADER_ELEMENT_UUID));
+    }
+
+    private static String directoriesInfos(UUID... directoryUuids) {
+        return Stream.of(directoryUuids).map(uuid -> "{\"uuid\":\"" + uuid + "\",\"isRoot\":false}").collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static boolean isDirectoryUpdateMessage(Message<?> message, String directoriesInfos, String elementName) {
+        return message != null && directoriesInfos.equals(message.getHeaders().get(HEADER_DIRECTORIES_INFOS))
+            && List.of(elementName).equals(message.getHeaders().get(HEADER_ELEMENT_NAMES));
+    }
+
+    @Test
+    void testFailedMessageBlocksTheFollowingOnesOfItsDirectories() {
+        Instant creationDate = Instant.now();
+        UUID dir1 = UUID.randomUUID();
+        UUID dir2 = UUID.randomUUID();
+        UUID dir3 = UUID.randomUUID();
+        NotificationOutboxEntity dir2Update = directoryUpdateNotification(2L, creationDate, directoriesInfos(dir2), "[\"b\"]");
+        List<NotificationOutboxEntity> notifications = List.of(
+            directoryUpdateNotification(1L, creationDate, directoriesInfos(dir1), "[\"a\"]"),
+            dir2Update,
+            // element moved from dir2 to dir3, waits for the update of dir2 and blocks dir3
+            directoryUpdateNotification(3L, creationDate, directoriesInfos(dir2, dir3), "[\"c\"]"),
+            directoryUpdateNotification(4L, creationDate, directoriesInfos(dir3), "[\"d\"]"),
+            directoryUpdateNotification(5L, creationDate, directoriesInfos(dir1), "[\"e\"]"),
+            deletedElementNotification(6L, elementUuid1));
+        when(notificationOutboxRepository.findOldestForUpdate(anyLong(), any())).thenReturn(notifications);
+        when(directoryUpdatePublisher.send(anyString(), any(Message.class))).thenReturn(true);
+        when(directoryUpdatePublisher.send(anyString(), argThat((Message<?> message) -> isDirectoryUpdateMessage(message, directoriesInfos(dir2), "b")))).thenReturn(false);
+
+        createRelay(10).publishAll();
+
+        verify(directoryUpdatePublisher, times(4)).send(anyString(), messageCaptor.capture());
+        verify(notificationOutboxRepository, times(1)).deleteAllByIdIn(List.of(1L, 5L, 6L));
+        assertEquals(1, dir2Update.getAttempts());
+        assertTrue(dir2Update.getNextAttemptDate().isAfter(Instant.now()));
+        assertEquals(3.0, meterRegistry.get("directory.notification.outbox.published").counter().count());
+        assertEquals(1.0, meterRegistry.get("directory.notification.outbox.failed").counter().count());
+
+        // the message to retry later still blocks the following ones of its directories
+        reset(directoryUpdatePublisher);
+        when(notificationOutboxRepository.findOldestForUpdate(anyLong(), any())).thenReturn(List.of(notifications.get(1), notifications.get(2), notifications.get(3)));
+        createRelay(10).publishAll();
+        verifyNoInteractions(directoryUpdatePublisher);
+    }
+
+    @Test
+    void testFailedMessageDroppedAfterMaxAttempts() {
+        when(notificationOutboxRepository.findOldestForUpdate(anyLong(), any())).thenReturn(List.of(notification1, notification2, notification3));
+        when(directoryUpdatePublisher.send(anyString(), any(Message.class))).thenReturn(true);
+        when(directoryUpdatePublisher.send(anyString(), argThat((Message<?> message) -> isDeletedElementMessage(message, elementUuid2)))).thenReturn(false);
+
+        createRelay(1).publishAll();
+
+        verify(notificationOutboxRepository, times(1)).deleteAllByIdIn(List.of(1L, 2L, 3L));
+        assertEquals(2.0, meterRegistry.get("directory.notification.outbox.published").counter().count());
+        assertEquals(1.0, meterRegistry.get("directory.notification.outbox.dropped").counter().count());
+    }
+
+    @Test
+    void testDirectoryUpdatesCoalescing() {
+        Instant creationDate = Instant.now().minusSeconds(10);
+        String dir1 = "[{\"elementUuid\":\"" + UUID.randomUUID() + "\",\"isRoot\":false}]";
+        String dir2 = "[{\"elementUuid\":\"" + UUID.randomUUID() + "\",\"isRoot\":false}]";
+        when(notificationOutboxRepository.findOldestForUpdate(anyLong(), any())).thenReturn(List.of(
+            directoryUpdateNotification(1L, creationDate, dir1, "[\"a\"]"),
+            directoryUpdateNotification(2L, creationDate, dir2, "[\"b\"]"),
+            directoryUpdateNotification(3L, creationDate.plusMillis(100), dir1, "[\"c\",\"a\"]"),
+            deletedElementNotification(4L, elementUuid1),
+            // not merged across the deletion
+            directoryUpdateNotification(5L, creationDate.plusMillis(200), dir1, "[\"d\"]"),
+            // out of the coalescing window
+            directoryUpdateNotification(6L, creationDate.plusMillis(2000), dir1, "[\"e\"]")));
+        when(directoryUpdatePublisher.send(anyString(), any(Message.class))).thenReturn(true);
+
+        createRelay(10, 1000).publishAll();
+
+        verify(directoryUpdatePublisher, times(5)).send(anyString(), messageCaptor.capture());
+        List<Message<?>> messages = messageCaptor.getAllValues();
+        assertEquals(List.of("a", "c"), messages.get(0).getHeaders().get(HEADER_ELEMENT_NAMES));
+        assertEquals(dir1, messages.get(0).getHeaders().get(HEADER_DIRECTORIES_INFOS));
+        assertEquals(NotificationType.UPDATE_DIRECTORY, messages.get(0).getHeaders().get(HEADER_NOTIFICATION_TYPE));
+        assertEquals(List.of("b"), messages.get(1).getHeaders().get(HEADER_ELEMENT_NAMES));
+        assertTrue(isDeletedElementMessage(messages.get(2), elementUuid1));
+        assertEquals(List.of("d"), messages.get(3).getHeaders().get(HEADER_ELEMENT_NAMES));
+        assertEquals(List.of("e"), messages.get(4).getHeaders().get(HEADER_ELEMENT_NAMES));
+        verify(notificationOutboxRepository, times(1)).deleteAllByIdIn(List.of(1L, 3L, 2L, 4L, 5L, 6L));
+        assertEquals(1.0, meterRegistry.get("directory.notification.outbox.coalesced").counter().count());
+    }
+
+    @Test
+    void testDirectoryUpdateWaitsForTheCoalescingWindow() {
+        Instant creationDate = Instant.now();
+        UUID dir1 = UUID.randomUUID();
+        UUID dir2 = UUID.randomUUID();
+        when(notificationOutboxRepository.findOldestForUpdate(anyLong(), any())).thenReturn(List.of(
+            directoryUpdateNotification(1L, creationDate, directoriesInfos(dir1), "[\"a\"]"),
+            notification2,
+            notification3,
+            // moved from dir1 to dir2, waits for the window of dir1
+            directoryUpdateNotification(4L, creationDate.minusSeconds(120), directoriesInfos(dir1, dir2), "[\"b\"]")));
+        when(directoryUpdatePublisher.send(anyString(), any(Message.class))).thenReturn(true);
+
+        createRelay(10, 60000).publishAll();
+
+        // only the messages without directory are sent
+        verify(directoryUpdatePublisher, times(2)).send(anyString(), messageCaptor.capture());
+        assertTrue(isDeletedElementMessage(messageCaptor.getAllValues().get(0), elementUuid2));
+        assertTrue(isDeletedElementMessage(messageCaptor.getAllValues().get(1), elementUuid3));
+        verify(notificationOutboxRepository, times(1)).deleteAllByIdIn(List.of(2L, 3L));
+    }
+
+    @Test
+    void testDirectoryUpdatesNotMergedAcrossAnotherMessageOfTheDirectory() {
+        Instant creationDate = Instant.now().minusSeconds(10);
+        UUID dir1 = UUID.randomUUID();
+        UUID dir2 = UUID.randomUUID();
+        when(notificationOutboxRepository.findOldestForUpdate(anyLong(), any())).thenReturn(List.of(
+            directoryUpdateNotification(1L, creationDate, directoriesInfos(dir1), "[\"a\"]"),
+            directoryUpdateNotification(2L, creationDate, directoriesInfos(dir1, dir2), "[\"b\"]"),
+            directoryUpdateNotification(3L, creationDate, directoriesInfos(dir1), "[\"c\"]")));
+        when(directoryUpdatePublisher.send(anyString(), any(Message.class))).thenReturn(true);
+
+        createRelay(10, 1000).publishAll();
+
+        verify(directoryUpdatePublisher, times(3)).send(anyString(), messageCaptor.capture());
+        assertEquals(List.of("a"), messageCaptor.getAllValues().get(0).getHeaders().get(HEADER_ELEMENT_NAMES));
+        assertEquals(List.of("b"), messageCaptor.getAllValues().get(1).getHeaders().get(HEADER_ELEMENT_NAMES));
+        assertEquals(List.of("c"), messageCaptor.getAllValues().get(2).getHeaders().get(HEADER_ELEMENT_NAMES));
+    }
+}
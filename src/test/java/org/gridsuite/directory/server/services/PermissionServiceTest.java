@@ -22,8 +22,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -181,17 +181,24 @@ class PermissionServiceTest {
     ) {
         UUID elementUuid = element.getType()
                                    .equals(DirectoryService.DIRECTORY) ? element.getId() : element.getParentId();
-        PermissionId permissionId = new PermissionId(elementUuid, allUsers, userGroupId);
         PermissionEntity permissionEntity = new PermissionEntity();
+        permissionEntity.setElementId(elementUuid);
+        permissionEntity.setUserId(allUsers);
+        permissionEntity.setUserGroupId(userGroupId);
         switch (permissionType) {
             case READ -> permissionEntity.setRead(true);
             case WRITE -> permissionEntity.setWrite(true);
             case MANAGE -> permissionEntity.setManage(true);
         }
-        lenient().when(permissionRepository.findById(any()))
-                .thenReturn(Optional.empty());
-        lenient().when(permissionRepository.findById(permissionId))
-                .thenReturn(Optional.of(permissionEntity));
+        // mimics the repository query: only the rows of the requested elements and principals are returned
+        lenient().when(permissionRepository.findAllByElementIdInAndPrincipals(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Collection<UUID> elementIds = invocation.getArgument(0);
+                    Collection<String> userIds = invocation.getArgument(1);
+                    Collection<String> userGroupIds = invocation.getArgument(2);
+                    boolean matches = elementIds.contains(elementUuid) && (userGroupId.isEmpty() ? userIds.contains(allUsers) : userGroupIds.contains(userGroupId));
+                    return matches ? List.of(permissionEntity) : List.of();
+                });
     }
 
     private void mockSimpleUser() {
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2026, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.gridsuite.directory.server.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.gridsuite.directory.server.dto.UserGroupDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author agent <agent at local>
+ */
+@ExtendWith(MockitoExtension.class)
+class UserAdminServiceTest {
+
+    private static final String USER = "user";
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private UserAdminService userAdminService;
+
+    private final UserGroupDTO group = new UserGroupDTO(UUID.randomUUID(), "group", Set.of(USER));
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userAdminService = new UserAdminService(restTemplate, new RemoteServicesProperties(), meterRegistry, 100, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void testGroupsAreCached() {
+        when(restTemplate.getForEntity(anyString(), eq(UserGroupDTO[].class))).thenReturn(ResponseEntity.ok(new UserGroupDTO[] {group}));
+
+        assertEquals(List.of(group), userAdminService.getUserGroups(USER));
+        assertEquals(List.of(group), userAdminService.getUserGroups(USER));
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(UserGroupDTO[].class));
+
+        assertEquals(1.0, meterRegistry.get("cache.size").tag("cache", "userGroups").gauge().value());
+    }
+
+    @Test
+    void testGroupsAreMemoizedForTheRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(restTemplate.getForEntity(anyString(), eq(UserGroupDTO[].class))).thenReturn(ResponseEntity.ok(new UserGroupDTO[] {group}));
+
+        userAdminService.getUserGroups(USER);
+        // the request memo still answers once the process-wide cache has been dropped
+        userAdminService.invalidateAllUserGroups();
+        assertEquals(List.of(group), userAdminService.getUserGroups(USER));
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(UserGroupDTO[].class));
+    }
+
+    @Test
+    void testInvalidation() {
+        when(restTemplate.getForEntity(anyString(), eq(UserGroupDTO[].class))).thenReturn(ResponseEntity.ok(new UserGroupDTO[] {group}));
+
+        userAdminService.getUserGroups(USER);
+        userAdminService.invalidateUserGroups(USER);
+        userAdminService.getUserGroups(USER);
+        userAdminService.invalidateAllUserGroups();
+        userAdminService.getUserGroups(USER);
+        verify(restTemplate, times(3)).getForEntity(anyString(), eq(UserGroupDTO[].class));
+    }
+
+    @Test
+    void testFailuresAreNotCached() {
+        when(restTemplate.getForEntity(anyString(), eq(UserGroupDTO[].class)))
+            .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND))
+            .thenReturn(ResponseEntity.ok(new UserGroupDTO[] {group}));
+
+        assertTrue(userAdminService.getUserGroups(USER).isEmpty());
+        assertEquals(List.of(group), userAdminService.getUserGroups(USER));
+        verify(restTemplate, times(2)).getForEntity(anyString(), eq(UserGroupDTO[].class));
+    }
+}
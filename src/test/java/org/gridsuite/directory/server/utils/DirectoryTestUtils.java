@@ -11,6 +11,9 @@ import okhttp3.mockwebserver.MockResponse;
 import org.gridsuite.directory.server.dto.ElementAttributes;
 import org.gridsuite.directory.server.dto.ReferenceAttributes;
 import org.gridsuite.directory.server.repository.DirectoryElementEntity;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository.DirectoryNode;
+import org.gridsuite.directory.server.repository.DirectoryElementRepository.IndexedElement;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 
@@ -34,6 +37,29 @@ public final class DirectoryTestUtils {
         return new DirectoryElementEntity(UUID.randomUUID(), parentDirectoryUuid, elementName, type, userId, null, Instant.now(), Instant.now(), userId, List.of());
     }
 
+    public static DirectoryNode directoryNode(UUID id, UUID parentId, String name) {
+        return new DirectoryNode() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public UUID getParentId() {
+                return parentId;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    public static IndexedElement indexedElement(DirectoryElementEntity elementEntity) {
+        return new SpelAwareProxyProjectionFactory().createProjection(IndexedElement.class, elementEntity);
+    }
+
     public static MockResponse jsonResponse(HttpStatus status, String body) {
         return new MockResponse()
                 .setResponseCode(status.value())